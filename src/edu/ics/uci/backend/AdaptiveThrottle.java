@@ -0,0 +1,141 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the crawl to hold the file system's latency at a target.
+ * Crawlers report how long each stat, open and read took, and every
+ * adjustment interval the files per second allowed are scaled by how far
+ * the interval's average latency is from the target: cut down to half
+ * when the storage is slow, and raised by at most a quarter when it keeps up.
+ * 
+ * The rate is never raised above twice the files actually crawled in
+ * the last interval, so it stays close enough to the real pace to
+ * take effect as soon as the latency climbs.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class AdaptiveThrottle {
+	
+	private static final double START_RATE = 100;
+	private static final double MIN_RATE = 1;
+	
+	private static final double MIN_FACTOR = 0.5;
+	private static final double MAX_FACTOR = 1.25;
+	
+	/**
+	 * How much each sample moves the average latency.
+	 */
+	private static final double SMOOTHING = 0.1;
+	
+	private static final long ADJUST_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	private final RateLimiter limiter;
+	private final long targetLatency;
+	private final double maxRate;
+	
+	/**
+	 * The moving average of the reported latencies, in nanoseconds.
+	 */
+	private double averageLatency = 0;
+	private long sampleCount = 0;
+	
+	/**
+	 * The latencies reported since the last adjustment.
+	 */
+	private long intervalLatency = 0;
+	private long intervalSamples = 0;
+	
+	private long acquired = 0;
+	private long lastAdjust;
+	
+	/**
+	 * Hold the average latency at targetLatency microseconds, without
+	 * crawling more than maxRate files per second, or with no cap if maxRate is 0.
+	 */
+	public AdaptiveThrottle(long targetLatency, double maxRate) {
+		this.targetLatency = TimeUnit.MICROSECONDS.toNanos(targetLatency);
+		this.maxRate = maxRate > 0 ? maxRate : Double.MAX_VALUE;
+		limiter = new RateLimiter(Math.min(START_RATE, this.maxRate));
+		lastAdjust = System.nanoTime();
+	}
+	
+	/**
+	 * Wait until another file is allowed.
+	 */
+	public void acquire() {
+		synchronized(this) {
+			acquired++;
+		}
+		limiter.acquire();
+	}
+	
+	/**
+	 * Report how long a stat, open or read took, in nanoseconds.
+	 */
+	public synchronized void record(long latency) {
+		if(sampleCount++ == 0) {
+			averageLatency = latency;
+		} else {
+			averageLatency += SMOOTHING * (latency - averageLatency);
+		}
+		intervalLatency += latency;
+		intervalSamples++;
+		long now = System.nanoTime();
+		if(now - lastAdjust >= ADJUST_INTERVAL) {
+			adjust(now);
+		}
+	}
+	
+	private void adjust(long now) {
+		double rate = limiter.getRate();
+		double latency = (double) intervalLatency / intervalSamples;
+		double factor = Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, targetLatency / Math.max(1, latency)));
+		double newRate = rate * factor;
+		if(factor > 1) {
+			double crawledRate = acquired * (double) TimeUnit.SECONDS.toNanos(1) / (now - lastAdjust);
+			newRate = Math.max(rate, Math.min(newRate, crawledRate * 2));
+		}
+		limiter.setRate(Math.max(MIN_RATE, Math.min(maxRate, newRate)));
+		acquired = 0;
+		intervalLatency = 0;
+		intervalSamples = 0;
+		lastAdjust = now;
+	}
+	
+	/**
+	 * Return the files per second currently allowed.
+	 */
+	public double getRate() {
+		return limiter.getRate();
+	}
+	
+	/**
+	 * Return the average reported latency, in microseconds.
+	 */
+	public synchronized double getAverageLatency() {
+		return averageLatency / 1000;
+	}
+	
+	public synchronized long getSampleCount() {
+		return sampleCount;
+	}
+}
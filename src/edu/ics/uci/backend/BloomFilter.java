@@ -0,0 +1,114 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+/**
+ * A Bloom filter over primitive long keys. It answers most lookups of
+ * keys that were never added without touching the set behind it.
+ * The probe counts are kept so the false positive rate can be reported.
+ * 
+ * This class is not thread-safe.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class BloomFilter {
+	
+	private final long[] bits;
+	private final long bitCount;
+	private final int hashCount;
+	
+	private long probes = 0;
+	private long negatives = 0;
+	private long falsePositives = 0;
+	
+	/**
+	 * Size the filter so that it has the given false positive rate
+	 * once expectedKeys keys have been added.
+	 */
+	public BloomFilter(long expectedKeys, double falsePositiveRate) {
+		long expected = Math.max(expectedKeys, 1);
+		long wantedBits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		int words = (int) Math.min((wantedBits + 63) >>> 6, Integer.MAX_VALUE - 8);
+		bits = new long[Math.max(words, 1)];
+		bitCount = (long) bits.length << 6;
+		hashCount = (int) Math.max(1, Math.round((double) bitCount / expected * Math.log(2)));
+	}
+	
+	public void put(long key) {
+		long h1 = Parser.mix(key);
+		long h2 = Parser.mix(h1) | 1;
+		for(int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+	
+	/**
+	 * Return false if the key was definitely never added.
+	 */
+	public boolean mightContain(long key) {
+		probes++;
+		long h1 = Parser.mix(key);
+		long h2 = Parser.mix(h1) | 1;
+		for(int i = 0; i < hashCount; i++) {
+			long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+			if((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				negatives++;
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Record that mightContain returned true for a key that wasn't added.
+	 */
+	public void falsePositive() {
+		falsePositives++;
+	}
+	
+	public long getProbeCount() {
+		return probes;
+	}
+	
+	public long getNegativeCount() {
+		return negatives;
+	}
+	
+	public long getFalsePositiveCount() {
+		return falsePositives;
+	}
+	
+	/**
+	 * The fraction of lookups of keys that were never added
+	 * that the filter could not answer on its own.
+	 */
+	public double getFalsePositiveRate() {
+		long misses = negatives + falsePositives;
+		return misses == 0 ? 0 : (double) falsePositives / misses;
+	}
+	
+	public int getHashCount() {
+		return hashCount;
+	}
+	
+	public long getBitCount() {
+		return bitCount;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of direct ByteBuffers for reading file contents, so reading a
+ * file doesn't allocate a new buffer. Buffers come in power of two sizes
+ * from 64KB to 8MB, and a few of each size are kept for reuse. The pool
+ * is shared by all threads rather than kept per thread, since processing
+ * may run on a new virtual thread for every file.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class BufferPool {
+	
+	private static final int MIN_SHIFT = 16;
+	private static final int MAX_SHIFT = 23;
+	
+	/**
+	 * The size of the buffers files are read through in chunks.
+	 */
+	public static final int CHUNK_SIZE = 1 << MIN_SHIFT;
+	
+	/**
+	 * The largest buffer that is pooled. Larger buffers are allocated for each use.
+	 */
+	public static final int MAX_POOLED_SIZE = 1 << MAX_SHIFT;
+	
+	private static final int MAX_BUFFERS_PER_SIZE = 16;
+	
+	private static final List<ConcurrentLinkedQueue<ByteBuffer>> buffers = new ArrayList<ConcurrentLinkedQueue<ByteBuffer>>();
+	private static final List<AtomicInteger> bufferCounts = new ArrayList<AtomicInteger>();
+	
+	static {
+		for(int shift = MIN_SHIFT; shift <= MAX_SHIFT; shift++) {
+			buffers.add(new ConcurrentLinkedQueue<ByteBuffer>());
+			bufferCounts.add(new AtomicInteger());
+		}
+	}
+	
+	/**
+	 * Take a cleared direct buffer with a limit of capacity bytes.
+	 * Hand it back with release() once done with it.
+	 */
+	public static ByteBuffer acquire(int capacity) {
+		int index = indexFor(capacity);
+		ByteBuffer buffer = null;
+		if(index < buffers.size()) {
+			buffer = buffers.get(index).poll();
+			if(buffer != null) {
+				bufferCounts.get(index).decrementAndGet();
+			} else {
+				buffer = ByteBuffer.allocateDirect(1 << (MIN_SHIFT + index));
+			}
+		} else {
+			buffer = ByteBuffer.allocateDirect(capacity);
+		}
+		buffer.clear();
+		buffer.limit(capacity);
+		return buffer;
+	}
+	
+	/**
+	 * Give a buffer from acquire() back to the pool.
+	 */
+	public static void release(ByteBuffer buffer) {
+		int index = Integer.numberOfTrailingZeros(buffer.capacity()) - MIN_SHIFT;
+		if(Integer.bitCount(buffer.capacity()) != 1 || index < 0 || index >= buffers.size()) {
+			return;
+		}
+		if(bufferCounts.get(index).incrementAndGet() <= MAX_BUFFERS_PER_SIZE) {
+			buffers.get(index).offer(buffer);
+		} else {
+			bufferCounts.get(index).decrementAndGet();
+		}
+	}
+	
+	/**
+	 * The index of the smallest pooled size that holds capacity bytes,
+	 * or buffers.size() if it is larger than them all.
+	 */
+	private static int indexFor(int capacity) {
+		if(capacity > MAX_POOLED_SIZE) {
+			return buffers.size();
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+		return Math.max(shift, MIN_SHIFT) - MIN_SHIFT;
+	}
+}
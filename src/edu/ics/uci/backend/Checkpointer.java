@@ -0,0 +1,156 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Saves the Frontier on a background thread every so many files,
+ * every so many milliseconds, or both. Crawlers only count the files
+ * they add, the saving itself happens on the checkpoint thread.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class Checkpointer implements Runnable {
+	
+	private static final Logger logger = Logger.getLogger(Checkpointer.class.getName());
+	
+	private final Frontier frontier;
+	
+	/**
+	 * Checkpoint after this many files, or 0 to not count files.
+	 */
+	private final long fileInterval;
+	
+	/**
+	 * Checkpoint after this many milliseconds, or 0 to not use a timer.
+	 */
+	private final long timeInterval;
+	
+	private final AtomicLong addedFiles = new AtomicLong();
+	private long checkpointedFiles = 0;
+	
+	private volatile boolean running = false;
+	private Thread thread;
+	
+	private volatile long checkpointCount = 0;
+	private volatile long lastCheckpointDuration = 0;
+	private volatile long totalCheckpointDuration = 0;
+	
+	public Checkpointer(Frontier frontier, long fileInterval, long timeInterval) {
+		this.frontier = frontier;
+		this.fileInterval = fileInterval;
+		this.timeInterval = timeInterval;
+	}
+	
+	public synchronized void start() {
+		running = true;
+		thread = new Thread(this, "Checkpointer");
+		thread.setDaemon(true);
+		thread.start();
+		logger.info("Checkpointer started");
+	}
+	
+	/**
+	 * Stop the checkpoint thread, waiting for a running checkpoint to finish.
+	 * Does nothing if it was already stopped.
+	 */
+	public void stop() throws InterruptedException {
+		Thread stopping;
+		synchronized(this) {
+			stopping = thread;
+			thread = null;
+			running = false;
+			notify();
+		}
+		if(stopping == null) {
+			return;
+		}
+		stopping.join();
+		logger.info("Checkpointer stopped");
+	}
+	
+	/**
+	 * Count a file added to the Frontier. Wakes the checkpoint thread
+	 * whenever another fileInterval files have been added.
+	 */
+	public void fileAdded() {
+		long added = addedFiles.incrementAndGet();
+		if(fileInterval > 0 && added % fileInterval == 0) {
+			synchronized(this) {
+				notify();
+			}
+		}
+	}
+	
+	public void run() {
+		while(running) {
+			try {
+				synchronized(this) {
+					while(running && !isDue()) {
+						wait(timeInterval);
+						if(timeInterval > 0) {
+							break;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			if(!running) {
+				break;
+			}
+			checkpoint();
+		}
+	}
+	
+	private boolean isDue() {
+		return fileInterval > 0 && addedFiles.get() - checkpointedFiles >= fileInterval;
+	}
+	
+	private void checkpoint() {
+		checkpointedFiles = addedFiles.get();
+		long start = System.currentTimeMillis();
+		frontier.syncAll();
+		lastCheckpointDuration = System.currentTimeMillis() - start;
+		totalCheckpointDuration += lastCheckpointDuration;
+		checkpointCount++;
+		logger.debug("Checkpoint took " + lastCheckpointDuration + "ms");
+	}
+	
+	public long getCheckpointCount() {
+		return checkpointCount;
+	}
+	
+	/**
+	 * Return how long the last checkpoint took, in milliseconds.
+	 */
+	public long getLastCheckpointDuration() {
+		return lastCheckpointDuration;
+	}
+	
+	/**
+	 * Return how long all checkpoints took together, in milliseconds.
+	 */
+	public long getTotalCheckpointDuration() {
+		return totalCheckpointDuration;
+	}
+}
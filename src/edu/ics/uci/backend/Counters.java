@@ -14,9 +14,19 @@
 
 package edu.ics.uci.backend;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * The crawl's counts, kept in striped LongAdder and LongAccumulator cells
+ * so crawler threads update them without contending on a lock. Reading a
+ * count sums its cells. Use snapshot() to read every count at once, for
+ * a checkpoint or a report.
+ * 
  * This project is based on the open-source project "Crawler4j" 
  * by Yasser Ganjisaffar, and contains both duplicate and modified
  * portions of code from the "Crawler4j" project.
@@ -24,74 +34,164 @@ import java.io.Serializable;
  * @author Paul Tapalla <ptapalla at uci dot edu>
  */
 public class Counters implements Serializable {
-
-	private static final long serialVersionUID = 1L;
 	
-	private String pathToDirectory;
+	private static final long serialVersionUID = 2L;
+	
+	private volatile String pathToDirectory;
+	
+	private volatile FileIdentity fileIdentity;
+	
+	private volatile boolean isFinished = false;
+	
+	/**
+	 * Increases every time these counters are saved,
+	 * so the newest saved copy can be told apart.
+	 */
+	private long checkpoint = 0;
+	
+	/**
+	 * The number of files the crawl is expected to see in all,
+	 * or 0 if unknown. Progress is reported against it.
+	 */
+	private volatile long expectedFileCount = 0;
 	
-	private boolean isFinished = false;
+	/**
+	 * The cells are written out as plain longs by writeObject().
+	 */
+	private transient LongAccumulator maxDepth;
+	private transient LongAdder visitedDirs;
+	private transient LongAdder skippedDirs;
+	private transient LongAdder processedFiles;
+	private transient LongAdder skippedFiles;
 	
-	private int maxDepth = -1;
-	private int visitedDirs = 0;
-	private int skippedDirs = 0;
-	private int processedFiles = 0;
-	private int skippedFiles = 0;
+	public Counters() {
+		allocate();
+	}
+	
+	private void allocate() {
+		maxDepth = new LongAccumulator(Math::max, -1);
+		visitedDirs = new LongAdder();
+		skippedDirs = new LongAdder();
+		processedFiles = new LongAdder();
+		skippedFiles = new LongAdder();
+	}
 	
 	protected void setPathToDirectory(String pathToDirectory) {
 		this.pathToDirectory = pathToDirectory;
 	}
 	
 	protected void setMaxDepth(int maxDepth) {
-		if(this.maxDepth < maxDepth) {
-			this.maxDepth = maxDepth;
-		}
+		this.maxDepth.accumulate(maxDepth);
 	}
 	
 	protected void incrementVisitedDirs() {
-		visitedDirs++;
+		visitedDirs.increment();
 	}
 	
 	protected void incrementSkippedDirs() {
-		skippedDirs++;
+		skippedDirs.increment();
 	}
 	
 	protected void incrementProcessedFiles() {
-		processedFiles++;
+		processedFiles.increment();
 	}
 	
 	protected void incrementSkippedFiles() {
-		skippedFiles++;
+		skippedFiles.increment();
+	}
+	
+	protected void setFileIdentity(FileIdentity fileIdentity) {
+		this.fileIdentity = fileIdentity;
+	}
+	
+	protected void setExpectedFileCount(long expectedFileCount) {
+		this.expectedFileCount = expectedFileCount;
 	}
 	
-	protected String getPathToDirectory() {
+	public long getExpectedFileCount() {
+		return expectedFileCount;
+	}
+	
+	public FileIdentity getFileIdentity() {
+		return fileIdentity;
+	}
+	
+	public String getPathToDirectory() {
 		return pathToDirectory;
 	}
 	
-	protected int getMaxDepth() {
-		return maxDepth;
+	public int getMaxDepth() {
+		return (int) maxDepth.get();
+	}
+	
+	public long getVisitedDirCount() {
+		return visitedDirs.sum();
+	}
+	
+	public long getSkippedDirCount() {
+		return skippedDirs.sum();
 	}
 	
-	protected int getVisitedDirCount() {
-		return visitedDirs;
+	public long getProcessedFileCount() {
+		return processedFiles.sum();
 	}
 	
-	protected int getSkippedDirCount() {
-		return skippedDirs;
+	public long getSkippedFileCount() {
+		return skippedFiles.sum();
 	}
 	
-	protected int getProcessedFileCount() {
-		return processedFiles;
+	protected synchronized long nextCheckpoint() {
+		return ++checkpoint;
 	}
 	
-	protected int getSkippedFileCount() {
-		return skippedFiles;
+	public synchronized long getCheckpoint() {
+		return checkpoint;
 	}
 	
-	protected boolean isFinished() {
+	public boolean isFinished() {
 		return isFinished;
 	}
 	
 	protected void finished() {
 		isFinished = true;
 	}
+	
+	/**
+	 * Return a copy of the counters that crawler threads no longer update.
+	 * Each count is exact as of some moment while the copy was taken, and
+	 * since counts only grow, no count is ahead of a copy taken later.
+	 */
+	public synchronized Counters snapshot() {
+		Counters snapshot = new Counters();
+		snapshot.pathToDirectory = pathToDirectory;
+		snapshot.fileIdentity = fileIdentity;
+		snapshot.isFinished = isFinished;
+		snapshot.checkpoint = checkpoint;
+		snapshot.expectedFileCount = expectedFileCount;
+		snapshot.maxDepth.accumulate(maxDepth.get());
+		snapshot.visitedDirs.add(visitedDirs.sum());
+		snapshot.skippedDirs.add(skippedDirs.sum());
+		snapshot.processedFiles.add(processedFiles.sum());
+		snapshot.skippedFiles.add(skippedFiles.sum());
+		return snapshot;
+	}
+	
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeLong(maxDepth.get());
+		out.writeLong(visitedDirs.sum());
+		out.writeLong(skippedDirs.sum());
+		out.writeLong(processedFiles.sum());
+		out.writeLong(skippedFiles.sum());
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		allocate();
+		maxDepth.accumulate(in.readLong());
+		visitedDirs.add(in.readLong());
+		skippedDirs.add(in.readLong());
+		processedFiles.add(in.readLong());
+		skippedFiles.add(in.readLong());
+	}
 }
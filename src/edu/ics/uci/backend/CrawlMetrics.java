@@ -0,0 +1,156 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the crawl has seen so far and how long it took: the bytes and
+ * files seen, the files by extension and by depth, and a latency
+ * histogram for each operation the crawlers time. Crawler threads
+ * update it without locking; snapshot() can be taken at any time.
+ * 
+ * The metrics cover this run only; they start over when a crawl resumes.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class CrawlMetrics {
+	
+	/**
+	 * The operations whose latencies are recorded.
+	 */
+	public enum Operation {
+		/**
+		 * Reading a file's or directory's attributes.
+		 */
+		STAT,
+		/**
+		 * Opening and reading a directory's entries, without crawling them.
+		 */
+		LIST,
+		/**
+		 * A call to FileCrawler.shouldProcess().
+		 */
+		SHOULD_PROCESS,
+		/**
+		 * A call to FileCrawler.process().
+		 */
+		PROCESS
+	}
+	
+	private final LongAdder filesSeen = new LongAdder();
+	private final LongAdder bytesSeen = new LongAdder();
+	private final ConcurrentHashMap<String, LongAdder> filesByExtension = new ConcurrentHashMap<String, LongAdder>();
+	private final ConcurrentHashMap<Integer, LongAdder> filesByDepth = new ConcurrentHashMap<Integer, LongAdder>();
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+	
+	public CrawlMetrics() {
+		for(Operation operation : Operation.values()) {
+			latencies.put(operation, new LatencyHistogram());
+		}
+	}
+	
+	/**
+	 * Record a file the crawl saw for the first time.
+	 */
+	public void fileSeen(String name, int depth, long size) {
+		filesSeen.increment();
+		bytesSeen.add(size);
+		if(!name.isEmpty()) {
+			increment(filesByExtension, Parser.getFileExtension(name));
+		}
+		increment(filesByDepth, depth);
+	}
+	
+	public void record(Operation operation, long nanos) {
+		latencies.get(operation).record(nanos);
+	}
+	
+	/**
+	 * Record how long an operation started at start, from System.nanoTime(), took.
+	 */
+	public void recordSince(Operation operation, long start) {
+		latencies.get(operation).record(System.nanoTime() - start);
+	}
+	
+	public long getFilesSeen() {
+		return filesSeen.sum();
+	}
+	
+	public long getBytesSeen() {
+		return bytesSeen.sum();
+	}
+	
+	/**
+	 * Return the number of files seen with each extension, by extension.
+	 */
+	public Map<String, Long> getFilesByExtension() {
+		return sum(filesByExtension);
+	}
+	
+	/**
+	 * Return the number of files seen at each depth, by depth.
+	 */
+	public Map<Integer, Long> getFilesByDepth() {
+		return sum(filesByDepth);
+	}
+	
+	public LatencyHistogram getLatency(Operation operation) {
+		return latencies.get(operation);
+	}
+	
+	/**
+	 * Return a copy that the crawlers no longer update.
+	 */
+	public CrawlMetrics snapshot() {
+		CrawlMetrics snapshot = new CrawlMetrics();
+		snapshot.filesSeen.add(filesSeen.sum());
+		snapshot.bytesSeen.add(bytesSeen.sum());
+		copy(filesByExtension, snapshot.filesByExtension);
+		copy(filesByDepth, snapshot.filesByDepth);
+		for(Operation operation : Operation.values()) {
+			snapshot.latencies.put(operation, latencies.get(operation).snapshot());
+		}
+		return snapshot;
+	}
+	
+	private static <K> void increment(ConcurrentHashMap<K, LongAdder> counts, K key) {
+		counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+	}
+	
+	private static <K> Map<K, Long> sum(Map<K, LongAdder> counts) {
+		Map<K, Long> sums = new TreeMap<K, Long>();
+		for(Map.Entry<K, LongAdder> entry : counts.entrySet()) {
+			sums.put(entry.getKey(), entry.getValue().sum());
+		}
+		return sums;
+	}
+	
+	private static <K> void copy(Map<K, LongAdder> from, Map<K, LongAdder> to) {
+		for(Map.Entry<K, LongAdder> entry : from.entrySet()) {
+			LongAdder count = new LongAdder();
+			count.add(entry.getValue().sum());
+			to.put(entry.getKey(), count);
+		}
+	}
+}
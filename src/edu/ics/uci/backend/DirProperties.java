@@ -15,6 +15,14 @@
 package edu.ics.uci.backend;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.log4j.Logger;
 
 /**
  * This project is based on the open-source project "Crawler4j" 
@@ -25,13 +33,28 @@ import java.io.File;
  */
 public class DirProperties extends Properties {
 	
+	private static final Logger logger = Logger.getLogger(DirProperties.class.getName());
+	
 	public DirProperties(File file, int depth) {
 		super(file, depth);	
 	}
 	
+	public DirProperties(File file, int depth, BasicFileAttributes attributes) {
+		super(file, depth, attributes);
+	}
+	
+	/**
+	 * Return a stream of the entries inside this directory, read from
+	 * the file system as it is iterated. The stream must be closed.
+	 */
+	public DirectoryStream<Path> entries() throws IOException {
+		return Files.newDirectoryStream(file.toPath());
+	}
+	
 	/**
 	 * Return an array of type File of the files inside
-	 * this directory. 
+	 * this directory. This loads every entry at once,
+	 * prefer entries() for large directories.
 	 */
 	public File[] listFiles() {
 		return file.listFiles();
@@ -46,9 +69,33 @@ public class DirProperties extends Properties {
 	}
 	
 	/**
-	 * Return the number of files inside of this directory.
+	 * Return the number of files inside of this directory,
+	 * or -1 if it can't be listed. Entries are counted as they
+	 * are read, without keeping them in memory.
 	 */
 	public int getFileCount() {
-		return file.list().length;
+		int count = 0;
+		DirectoryStream<Path> stream = null;
+		try {
+			stream = entries();
+			for(@SuppressWarnings("unused") Path entry : stream) {
+				count++;
+			}
+		} catch (IOException e) {
+			logger.error("Caught IOException counting the files in: " + file.getPath());
+			count = -1;
+		} catch (DirectoryIteratorException e) {
+			logger.error("Caught IOException counting the files in: " + file.getPath());
+			count = -1;
+		} finally {
+			if(stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					logger.error("Caught IOException closing a directory stream");
+				}
+			}
+		}
+		return count;
 	}
 }
@@ -0,0 +1,371 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Finds files with the same contents under different paths. Files are
+ * grouped by size as they are crawled, which needs nothing but the stat
+ * the crawl already did. Once the crawl is done, only files that share
+ * their size are read: first the first and last block of each, then,
+ * for those whose blocks match too, the whole file. Files whose SHA-256
+ * digests match are reported as duplicates. A digest the hashing stage
+ * already took is used as is, without reading the file again.
+ * 
+ * The paths are spilled to a file as they are crawled, and only the sizes
+ * are kept on the heap, so only the paths of files that share their size
+ * are ever held in memory.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class DuplicateFinder {
+	
+	private static final Logger logger = Logger.getLogger(DuplicateFinder.class.getName());
+	
+	/**
+	 * The size of the first and last block read for the partial hash.
+	 */
+	private static final int BLOCK_SIZE = 4096;
+	
+	/**
+	 * Files smaller than this are not checked.
+	 */
+	private final long minSize;
+	
+	/**
+	 * The sizes of the files crawled, and those shared by more than one.
+	 */
+	private final LongHashSet sizes = new LongHashSet();
+	private final LongHashSet sharedSizes = new LongHashSet();
+	
+	/**
+	 * Each file's size, path and SHA-256 digest, or an empty digest if
+	 * there is none yet, in the order they were crawled.
+	 */
+	private final File spillFile;
+	private DataOutputStream spill;
+	
+	private long fileCount = 0;
+	private long partialHashCount = 0;
+	private long fullHashCount = 0;
+	private long groupCount = 0;
+	private long duplicateCount = 0;
+	private long duplicateBytes = 0;
+	
+	/**
+	 * Spill the crawled paths to this file, which is replaced if it exists.
+	 */
+	public DuplicateFinder(long minSize, File spillFile) throws IOException {
+		this.minSize = minSize;
+		this.spillFile = spillFile;
+		spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+	}
+	
+	/**
+	 * Record a crawled file, with its SHA-256 digest if it was already taken, or null.
+	 */
+	public synchronized void add(String path, long size, String sha256) {
+		if(size < minSize || spill == null) {
+			return;
+		}
+		try {
+			spill.writeLong(size);
+			spill.writeUTF(path);
+			spill.writeUTF(sha256 != null ? sha256 : "");
+		} catch (IOException e) {
+			logger.error("Caught IOException spilling to: " + spillFile.getPath() + ", no longer finding duplicates");
+			close();
+			return;
+		}
+		fileCount++;
+		if(!sizes.add(size)) {
+			sharedSizes.add(size);
+		}
+	}
+	
+	/**
+	 * Hash the files that share their size on this many threads, and pass
+	 * each group of duplicates to onDuplicates on the calling thread.
+	 * The spill file is deleted once read.
+	 */
+	public void findDuplicates(int threads, Consumer<List<String>> onDuplicates) throws InterruptedException {
+		Map<Long, List<String[]>> filesBySize = new HashMap<Long, List<String[]>>();
+		synchronized(this) {
+			if(spill == null) {
+				return;
+			}
+			close();
+			try {
+				readSpill(filesBySize);
+			} catch (IOException e) {
+				logger.error("Caught IOException reading: " + spillFile.getPath());
+				return;
+			} finally {
+				spillFile.delete();
+			}
+		}
+		List<Future<List<List<String>>>> results = new ArrayList<Future<List<List<String>>>>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for(Map.Entry<Long, List<String[]>> entry : filesBySize.entrySet()) {
+				final long size = entry.getKey();
+				final List<String[]> files = entry.getValue();
+				results.add(pool.submit(new Callable<List<List<String>>>() {
+					public List<List<String>> call() {
+						return groupProcedure(size, files);
+					}
+				}));
+			}
+			filesBySize = null;
+			for(Future<List<List<String>>> result : results) {
+				List<List<String>> groups;
+				try {
+					groups = result.get();
+				} catch (ExecutionException e) {
+					logger.error("Caught " + e.getCause().getClass().getSimpleName() + " finding duplicates: " + e.getCause().getMessage());
+					continue;
+				}
+				for(List<String> group : groups) {
+					onDuplicates.accept(group);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Read back the files whose size is shared, as pairs of path and digest, by size.
+	 */
+	private void readSpill(Map<Long, List<String[]>> filesBySize) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+		try {
+			while(true) {
+				long size;
+				try {
+					size = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				String path = in.readUTF();
+				String sha256 = in.readUTF();
+				if(sharedSizes.contains(size)) {
+					List<String[]> files = filesBySize.get(size);
+					if(files == null) {
+						files = new ArrayList<String[]>(2);
+						filesBySize.put(size, files);
+					}
+					files.add(new String[] { path, sha256.isEmpty() ? null : sha256 });
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Stop spilling. Files added after this are ignored.
+	 */
+	private void close() {
+		try {
+			spill.close();
+		} catch (IOException e) {
+			logger.error("Caught IOException closing: " + spillFile.getPath());
+		}
+		spill = null;
+	}
+	
+	/**
+	 * Return the groups of duplicates among files of the same size.
+	 * If any of them has a digest already, the digests are compared
+	 * right away, as a partial hash can't be matched against a digest.
+	 */
+	private List<List<String>> groupProcedure(long size, List<String[]> files) {
+		boolean digested = false;
+		for(String[] file : files) {
+			if(file[1] != null) {
+				digested = true;
+				break;
+			}
+		}
+		List<List<String[]>> candidateGroups = new ArrayList<List<String[]>>();
+		if(digested) {
+			candidateGroups.add(files);
+		} else {
+			Map<Long, List<String[]>> byPartialHash = new HashMap<Long, List<String[]>>();
+			int hashed = 0;
+			for(String[] file : files) {
+				try {
+					Long partialHash = partialHash(file[0], size);
+					if(partialHash != null) {
+						group(byPartialHash, partialHash, file);
+						hashed++;
+					}
+				} catch (IOException e) {
+					logger.error("Caught IOException reading: " + file[0]);
+				}
+			}
+			synchronized(this) {
+				partialHashCount += hashed;
+			}
+			candidateGroups.addAll(byPartialHash.values());
+		}
+		List<List<String>> duplicates = new ArrayList<List<String>>();
+		for(List<String[]> candidates : candidateGroups) {
+			if(candidates.size() < 2) {
+				continue;
+			}
+			Map<String, List<String>> byFullHash = new HashMap<String, List<String>>();
+			int hashed = 0;
+			for(String[] file : candidates) {
+				String sha256 = file[1];
+				if(sha256 == null) {
+					FileProperties fileProperties = new FileProperties(new File(file[0]), 0);
+					try {
+						fileProperties.hashContent(HashAlgorithm.SHA_256);
+						sha256 = fileProperties.getContentHash();
+						hashed++;
+					} catch (IOException e) {
+						logger.error("Caught IOException reading: " + file[0]);
+						continue;
+					}
+				}
+				group(byFullHash, sha256, file[0]);
+			}
+			synchronized(this) {
+				fullHashCount += hashed;
+				for(List<String> group : byFullHash.values()) {
+					if(group.size() > 1) {
+						duplicates.add(group);
+						groupCount++;
+						duplicateCount += group.size() - 1;
+						duplicateBytes += (group.size() - 1) * size;
+					}
+				}
+			}
+		}
+		return duplicates;
+	}
+	
+	/**
+	 * Hash the first and last block of a file, or return null
+	 * if its size changed since it was crawled.
+	 */
+	private static Long partialHash(String path, long size) throws IOException {
+		FileChannel channel = FileChannel.open(new File(path).toPath());
+		ByteBuffer buffer = BufferPool.acquire(BLOCK_SIZE);
+		try {
+			if(channel.size() != size) {
+				return null;
+			}
+			XxHash64 hasher = new XxHash64();
+			readBlock(channel, buffer, 0);
+			hasher.update(buffer);
+			if(size > BLOCK_SIZE) {
+				readBlock(channel, buffer, Math.max(BLOCK_SIZE, size - BLOCK_SIZE));
+				hasher.update(buffer);
+			}
+			return hasher.getValue();
+		} finally {
+			BufferPool.release(buffer);
+			channel.close();
+		}
+	}
+	
+	private static void readBlock(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.clear();
+		buffer.limit(BLOCK_SIZE);
+		while(buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if(read < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+	}
+	
+	private static <K, V> void group(Map<K, List<V>> groups, K key, V value) {
+		List<V> group = groups.get(key);
+		if(group == null) {
+			group = new ArrayList<V>(2);
+			groups.put(key, group);
+		}
+		group.add(value);
+	}
+	
+	public synchronized long getFileCount() {
+		return fileCount;
+	}
+	
+	/**
+	 * Return the number of files whose first and last blocks were read.
+	 */
+	public synchronized long getPartialHashCount() {
+		return partialHashCount;
+	}
+	
+	/**
+	 * Return the number of files read in full here, not counting those
+	 * whose digest the hashing stage took.
+	 */
+	public synchronized long getFullHashCount() {
+		return fullHashCount;
+	}
+	
+	public synchronized long getGroupCount() {
+		return groupCount;
+	}
+	
+	/**
+	 * Return the number of files that duplicate another file.
+	 */
+	public synchronized long getDuplicateCount() {
+		return duplicateCount;
+	}
+	
+	/**
+	 * Return the bytes taken up by files that duplicate another file.
+	 */
+	public synchronized long getDuplicateBytes() {
+		return duplicateBytes;
+	}
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Estimates how many files are under a directory without crawling it,
+ * using Knuth's estimator for the size of a tree: each probe walks from
+ * the top down into a random sub directory, and counts the files of each
+ * directory it passes as if every sibling held as many. The average of
+ * the probes is an unbiased estimate, though a lopsided tree needs more
+ * probes for a close one.
+ * 
+ * Only a sample of the entries of each directory is stat'ed, so
+ * a probe costs a listing and a few stats per level. The listing is
+ * streamed and cut off after a fixed number of entries, so a huge
+ * directory counts as if it held only that many.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class FileCountEstimator {
+	
+	private static final Logger logger = Logger.getLogger(FileCountEstimator.class.getName());
+	
+	/**
+	 * The most entries of a directory stat'ed to tell files from sub directories.
+	 */
+	private static final int SAMPLE_SIZE = 256;
+	
+	/**
+	 * The most entries of a directory read.
+	 */
+	private static final int MAX_ENTRIES = 65536;
+	
+	private static final int MAX_DEPTH = 256;
+	
+	private final Random random;
+	
+	public FileCountEstimator(Random random) {
+		this.random = random;
+	}
+	
+	/**
+	 * Return the average estimate of this many probes.
+	 */
+	public long estimate(File top, int probes) {
+		double total = 0;
+		for(int i = 0; i < probes; i++) {
+			total += probe(top);
+		}
+		return Math.round(total / probes);
+	}
+	
+	private double probe(File top) {
+		double files = 0;
+		double weight = 1;
+		File dir = top;
+		for(int depth = 0; depth < MAX_DEPTH && dir != null; depth++) {
+			List<Path> sample = new ArrayList<Path>(SAMPLE_SIZE);
+			int entries = sample(dir, sample);
+			if(entries == 0) {
+				break;
+			}
+			int sampled = sample.size();
+			List<File> subdirs = new ArrayList<File>();
+			int sampledFiles = 0;
+			for(Path path : sample) {
+				File entry = path.toFile();
+				if(entry.isDirectory()) {
+					subdirs.add(entry);
+				} else if(entry.isFile()) {
+					sampledFiles++;
+				}
+			}
+			double scale = (double) entries / sampled;
+			files += weight * sampledFiles * scale;
+			if(subdirs.isEmpty()) {
+				break;
+			}
+			weight *= subdirs.size() * scale;
+			dir = subdirs.get(random.nextInt(subdirs.size()));
+		}
+		return files;
+	}
+	
+	/**
+	 * Read up to MAX_ENTRIES entries of a directory, keeping a random sample
+	 * of SAMPLE_SIZE of them, and return how many were read.
+	 */
+	private int sample(File dir, List<Path> sample) {
+		int entries = 0;
+		DirectoryStream<Path> stream = null;
+		try {
+			stream = Files.newDirectoryStream(dir.toPath());
+			for(Path path : stream) {
+				/*
+				 * Reservoir sampling: the n-th entry replaces a random
+				 * one of the sample with probability SAMPLE_SIZE / n.
+				 */
+				if(entries < SAMPLE_SIZE) {
+					sample.add(path);
+				} else {
+					int pick = random.nextInt(entries + 1);
+					if(pick < SAMPLE_SIZE) {
+						sample.set(pick, path);
+					}
+				}
+				if(++entries == MAX_ENTRIES) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Caught IOException listing: " + dir.getPath());
+		} catch (DirectoryIteratorException e) {
+			logger.error("Caught IOException listing: " + dir.getPath());
+		} finally {
+			if(stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					logger.error("Caught IOException closing a directory stream");
+				}
+			}
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * How the Frontier tells files apart when deciding if a file was seen.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public enum FileIdentity {
+	
+	/**
+	 * A 64-bit fingerprint of the file's absolute path.
+	 */
+	PATH {
+		@Override
+		public long getKey(File file, BasicFileAttributes attributes) {
+			return Parser.getFingerprint(file.getAbsolutePath());
+		}
+	},
+	
+	/**
+	 * The file's device and inode numbers, so hard links to the same file
+	 * are only processed once. Falls back to PATH on file systems that
+	 * don't expose them. They are read as the "unix" attributes, which
+	 * takes a stat of its own, as the key in BasicFileAttributes has no
+	 * documented way to get at them.
+	 */
+	FILE_KEY {
+		@Override
+		public long getKey(File file, BasicFileAttributes attributes) {
+			if(fileKeySupported) {
+				try {
+					Map<String, Object> unixAttributes = Files.readAttributes(file.toPath(), "unix:dev,ino");
+					long dev = ((Number) unixAttributes.get("dev")).longValue();
+					long ino = ((Number) unixAttributes.get("ino")).longValue();
+					return toKey(dev, ino);
+				} catch (UnsupportedOperationException e) {
+					fileKeySupported = false;
+					logger.warn("Device and inode numbers are not supported, identifying files by path");
+				} catch (IllegalArgumentException e) {
+					fileKeySupported = false;
+					logger.warn("Device and inode numbers are not supported, identifying files by path");
+				} catch (IOException e) {
+					logger.error("Caught IOException reading the file key of: " + file.getPath());
+				}
+			}
+			return PATH.getKey(file);
+		}
+	};
+	
+	private static final Logger logger = Logger.getLogger(FileIdentity.class.getName());
+	
+	private static volatile boolean fileKeySupported = true;
+	
+	/**
+	 * Return the 64-bit key the Frontier stores for this file.
+	 */
+	public long getKey(File file) {
+		return getKey(file, null);
+	}
+	
+	/**
+	 * Return the 64-bit key the Frontier stores for this file,
+	 * using its attributes if they were already read, or null.
+	 */
+	public abstract long getKey(File file, BasicFileAttributes attributes);
+	
+	/**
+	 * Spread the device number over the key, leaving the inode numbers of a
+	 * device distinct. The sets holding the keys mix them again themselves.
+	 */
+	private static long toKey(long dev, long ino) {
+		return Parser.mix(dev) ^ ino;
+	}
+}
@@ -15,6 +15,13 @@
 package edu.ics.uci.backend;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
 
 /**
  * This project is based on the open-source project "Crawler4j" 
@@ -24,11 +31,159 @@ import java.io.File;
  * @author Paul Tapalla <ptapalla at uci dot edu>
  */
 public class FileProperties extends Properties {
-		
+	
+	/**
+	 * Files this large are hashed through memory mappings of this size
+	 * instead of pooled buffers.
+	 */
+	private static final int MAP_SIZE = 1 << 30;
+	
+	/**
+	 * The hex digest of the file's contents, or null if it wasn't hashed.
+	 */
+	private volatile String contentHash;
+	
 	public FileProperties(File file, int depth) {
 		super(file, depth);
 	}
 	
+	public FileProperties(File file, int depth, BasicFileAttributes attributes) {
+		super(file, depth, attributes);
+	}
+	
+	public FileProperties(File file, int depth, BasicFileAttributes attributes, AdaptiveThrottle throttle) {
+		super(file, depth, attributes, throttle);
+	}
+	
+	/**
+	 * Open a read-only channel to this file. The caller closes it.
+	 */
+	public FileChannel getChannel() throws IOException {
+		long start = System.nanoTime();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		record(start);
+		return channel;
+	}
+	
+	/**
+	 * Map the whole file into memory, read-only. The contents are read
+	 * straight from the page cache without being copied, which suits large
+	 * files best. Files of 2GB or more can't be mapped in one buffer.
+	 */
+	public MappedByteBuffer map() throws IOException {
+		FileChannel channel = getChannel();
+		try {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("Too large to map in one buffer: " + file.getPath());
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Read the file in chunks of up to BufferPool.CHUNK_SIZE bytes through a
+	 * pooled direct buffer, handing each chunk to the consumer ready to be read.
+	 * The buffer is reused once the consumer returns, so don't keep it.
+	 */
+	public void readChunks(Consumer<ByteBuffer> consumer) throws IOException {
+		FileChannel channel = getChannel();
+		ByteBuffer buffer = BufferPool.acquire(BufferPool.CHUNK_SIZE);
+		try {
+			while(true) {
+				buffer.clear();
+				long start = System.nanoTime();
+				int read = channel.read(buffer);
+				record(start);
+				if(read < 0) {
+					break;
+				}
+				buffer.flip();
+				consumer.accept(buffer);
+			}
+		} finally {
+			BufferPool.release(buffer);
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Read the whole file into a pooled direct buffer and hand it to the
+	 * consumer ready to be read. The buffer is reused once the consumer
+	 * returns, so don't keep it. Use map() or readChunks() for files larger
+	 * than BufferPool.MAX_POOLED_SIZE, which get a buffer of their own.
+	 */
+	public void readContent(Consumer<ByteBuffer> consumer) throws IOException {
+		FileChannel channel = getChannel();
+		ByteBuffer buffer = null;
+		try {
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE) {
+				throw new IOException("Too large to read into one buffer: " + file.getPath());
+			}
+			buffer = BufferPool.acquire((int) size);
+			while(buffer.hasRemaining()) {
+				long start = System.nanoTime();
+				int read = channel.read(buffer);
+				record(start);
+				if(read < 0) {
+					/*
+					 * The file shrank since its size was read.
+					 */
+					break;
+				}
+			}
+			buffer.flip();
+			consumer.accept(buffer);
+		} finally {
+			if(buffer != null) {
+				BufferPool.release(buffer);
+			}
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Compute the digest of the file's contents. Files up to BufferPool.MAX_POOLED_SIZE
+	 * are read through a pooled buffer, larger files are mapped.
+	 */
+	public void hashContent(HashAlgorithm algorithm) throws IOException {
+		HashAlgorithm.Hasher hasher = algorithm.newHasher();
+		if(getSize() <= BufferPool.MAX_POOLED_SIZE) {
+			readChunks(hasher::update);
+		} else {
+			FileChannel channel = getChannel();
+			try {
+				long size = channel.size();
+				for(long position = 0; position < size; position += MAP_SIZE) {
+					hasher.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position)));
+				}
+			} finally {
+				channel.close();
+			}
+		}
+		contentHash = toHex(hasher.digest());
+	}
+	
+	/**
+	 * Return the hex digest of the file's contents computed by the hashing
+	 * stage, or null if the stage is off or the file couldn't be read.
+	 */
+	public String getContentHash() {
+		return contentHash;
+	}
+	
+	private static String toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length << 1];
+		for(int i = 0; i < bytes.length; i++) {
+			hex[i << 1] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+			hex[(i << 1) + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+		}
+		return new String(hex);
+	}
+	
 	/**
 	 * Return the extension of this file.
 	 */
@@ -0,0 +1,373 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The size and last modified time of every file an incremental crawl
+ * processed, kept from one crawl to the next so only new and modified
+ * files are processed again. Files are stored in an open-addressing
+ * table keyed by their Frontier key, together with their path and the
+ * fingerprint of their parent directory.
+ * 
+ * The last modified time and the sub directories of every directory
+ * are kept too, so a directory that hasn't changed can be crawled
+ * without listing it.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class FileStateTable implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private static final int MAX_CAPACITY = 1 << 30;
+	
+	/**
+	 * How a file compares to its state from the last crawl.
+	 */
+	public enum Change {
+		NEW,
+		MODIFIED,
+		UNCHANGED
+	}
+	
+	/**
+	 * The slots of the table. A null path marks an empty slot.
+	 */
+	private transient long[] keys;
+	private transient long[] sizes;
+	private transient long[] lastModifieds;
+	private transient long[] parents;
+	private transient String[] paths;
+	private transient int size;
+	private transient int mask;
+	
+	/**
+	 * Marks the files found by this crawl.
+	 */
+	private transient boolean[] found;
+	
+	/**
+	 * The directories of the last crawl, and those found by this crawl.
+	 */
+	private transient Map<Long, DirectoryState> directories;
+	private transient Map<Long, DirectoryState> foundDirectories;
+	
+	/**
+	 * Directories this crawl didn't list. Their files are kept even
+	 * though this crawl didn't find them.
+	 */
+	private transient LongHashSet keptDirectories;
+	
+	private transient long newCount;
+	private transient long modifiedCount;
+	private transient long unchangedCount;
+	private transient long deletedCount;
+	
+	public FileStateTable() {
+		allocate(DEFAULT_CAPACITY);
+		directories = new HashMap<Long, DirectoryState>();
+		reset();
+	}
+	
+	/**
+	 * Mark a file as found by this crawl and return how it compares to
+	 * its state from the last crawl. Its new state isn't kept until
+	 * update() is called, so a file whose processing never finishes is
+	 * processed again by the next crawl.
+	 */
+	public synchronized Change check(long key, long size, long lastModified, long parent, String path) {
+		int slot = (int) Parser.mix(key) & mask;
+		while(paths[slot] != null) {
+			if(keys[slot] == key) {
+				found[slot] = true;
+				paths[slot] = path;
+				parents[slot] = parent;
+				if(sizes[slot] == size && lastModifieds[slot] == lastModified) {
+					unchangedCount++;
+					return Change.UNCHANGED;
+				}
+				modifiedCount++;
+				return Change.MODIFIED;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if(this.size == mask) {
+			throw new IllegalStateException("FileStateTable is full");
+		}
+		/*
+		 * No size matches -1, so the file stays changed until it is updated.
+		 */
+		put(slot, key, -1, lastModified, parent, path);
+		found[slot] = true;
+		newCount++;
+		if(this.size > maxSize(keys.length) && keys.length < MAX_CAPACITY) {
+			rehash(keys.length << 1);
+		}
+		return Change.NEW;
+	}
+	
+	/**
+	 * Record the state a checked file was processed in.
+	 */
+	public synchronized void update(long key, long size, long lastModified) {
+		int slot = (int) Parser.mix(key) & mask;
+		while(paths[slot] != null) {
+			if(keys[slot] == key) {
+				sizes[slot] = size;
+				lastModifieds[slot] = lastModified;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+	
+	/**
+	 * Return the sub directories this directory had in the last crawl
+	 * if its last modified time hasn't changed since, otherwise null.
+	 */
+	public synchronized String[] getUnchangedSubdirectories(long key, long lastModified) {
+		DirectoryState state = directories.get(key);
+		if(state == null || state.lastModified != lastModified) {
+			return null;
+		}
+		return state.subdirectories;
+	}
+	
+	/**
+	 * Record the state of a directory this crawl listed in full.
+	 */
+	public synchronized void updateDirectory(long key, long lastModified, String[] subdirectories) {
+		foundDirectories.put(key, new DirectoryState(lastModified, subdirectories));
+	}
+	
+	/**
+	 * Keep the files and the state of a directory this crawl didn't list,
+	 * because it was unchanged or couldn't be read.
+	 */
+	public synchronized void keepDirectory(long key) {
+		keptDirectories.add(key);
+		DirectoryState state = directories.get(key);
+		if(state != null) {
+			foundDirectories.put(key, state);
+		}
+	}
+	
+	/**
+	 * Remove every file this crawl didn't find, unless its directory was kept,
+	 * and pass each removed path that no longer exists to onDeleted. A path
+	 * can still exist when another file replaced it, which has its own key
+	 * if files are identified by file key. Call this once the crawl is
+	 * complete. The table is then ready for the next crawl.
+	 */
+	public synchronized void sweep(Consumer<String> onDeleted) {
+		long[] oldKeys = keys;
+		long[] oldSizes = sizes;
+		long[] oldLastModifieds = lastModifieds;
+		long[] oldParents = parents;
+		String[] oldPaths = paths;
+		boolean[] oldFound = found;
+		int kept = 0;
+		for(int i = 0; i < oldPaths.length; i++) {
+			if(oldPaths[i] != null && (oldFound[i] || keptDirectories.contains(oldParents[i]))) {
+				kept++;
+			}
+		}
+		allocate(tableSizeFor(kept));
+		for(int i = 0; i < oldPaths.length; i++) {
+			if(oldPaths[i] == null) {
+				continue;
+			}
+			if(oldFound[i] || keptDirectories.contains(oldParents[i])) {
+				int slot = (int) Parser.mix(oldKeys[i]) & mask;
+				while(paths[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				put(slot, oldKeys[i], oldSizes[i], oldLastModifieds[i], oldParents[i], oldPaths[i]);
+			} else if(!new File(oldPaths[i]).exists()) {
+				deletedCount++;
+				onDeleted.accept(oldPaths[i]);
+			}
+		}
+		directories = foundDirectories;
+		reset();
+	}
+	
+	public synchronized int size() {
+		return size;
+	}
+	
+	public synchronized long getNewCount() {
+		return newCount;
+	}
+	
+	public synchronized long getModifiedCount() {
+		return modifiedCount;
+	}
+	
+	public synchronized long getUnchangedCount() {
+		return unchangedCount;
+	}
+	
+	/**
+	 * Return the number of files the sweep found deleted.
+	 */
+	public synchronized long getDeletedCount() {
+		return deletedCount;
+	}
+	
+	/**
+	 * Start tracking which files and directories a new crawl finds.
+	 */
+	private void reset() {
+		found = new boolean[keys.length];
+		foundDirectories = new HashMap<Long, DirectoryState>();
+		keptDirectories = new LongHashSet();
+	}
+	
+	private void put(int slot, long key, long size, long lastModified, long parent, String path) {
+		keys[slot] = key;
+		sizes[slot] = size;
+		lastModifieds[slot] = lastModified;
+		parents[slot] = parent;
+		paths[slot] = path;
+		this.size++;
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		sizes = new long[capacity];
+		lastModifieds = new long[capacity];
+		parents = new long[capacity];
+		paths = new String[capacity];
+		found = new boolean[capacity];
+		size = 0;
+		mask = capacity - 1;
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldSizes = sizes;
+		long[] oldLastModifieds = lastModifieds;
+		long[] oldParents = parents;
+		String[] oldPaths = paths;
+		boolean[] oldFound = found;
+		allocate(capacity);
+		for(int i = 0; i < oldPaths.length; i++) {
+			if(oldPaths[i] != null) {
+				int slot = (int) Parser.mix(oldKeys[i]) & mask;
+				while(paths[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				put(slot, oldKeys[i], oldSizes[i], oldLastModifieds[i], oldParents[i], oldPaths[i]);
+				found[slot] = oldFound[i];
+			}
+		}
+	}
+	
+	private static int maxSize(int capacity) {
+		return capacity - (capacity >> 2);
+	}
+	
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while(capacity < MAX_CAPACITY && maxSize(capacity) < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+	
+	/**
+	 * Only the files and directories are written, not the empty slots of the table.
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for(int i = 0; i < paths.length; i++) {
+			if(paths[i] != null) {
+				out.writeLong(keys[i]);
+				out.writeLong(sizes[i]);
+				out.writeLong(lastModifieds[i]);
+				out.writeLong(parents[i]);
+				out.writeUTF(paths[i]);
+			}
+		}
+		out.writeInt(directories.size());
+		for(Map.Entry<Long, DirectoryState> entry : directories.entrySet()) {
+			DirectoryState state = entry.getValue();
+			out.writeLong(entry.getKey());
+			out.writeLong(state.lastModified);
+			out.writeInt(state.subdirectories.length);
+			for(int i = 0; i < state.subdirectories.length; i++) {
+				out.writeUTF(state.subdirectories[i]);
+			}
+		}
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int count = in.readInt();
+		allocate(tableSizeFor(count));
+		for(int i = 0; i < count; i++) {
+			long key = in.readLong();
+			long fileSize = in.readLong();
+			long lastModified = in.readLong();
+			long parent = in.readLong();
+			String path = in.readUTF();
+			int slot = (int) Parser.mix(key) & mask;
+			while(paths[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			put(slot, key, fileSize, lastModified, parent, path);
+		}
+		int directoryCount = in.readInt();
+		directories = new HashMap<Long, DirectoryState>();
+		for(int i = 0; i < directoryCount; i++) {
+			long key = in.readLong();
+			long lastModified = in.readLong();
+			String[] subdirectories = new String[in.readInt()];
+			for(int j = 0; j < subdirectories.length; j++) {
+				subdirectories[j] = in.readUTF();
+			}
+			directories.put(key, new DirectoryState(lastModified, subdirectories));
+		}
+		reset();
+	}
+	
+	private static class DirectoryState {
+		
+		private final long lastModified;
+		private final String[] subdirectories;
+		
+		private DirectoryState(long lastModified, String[] subdirectories) {
+			this.lastModified = lastModified;
+			this.subdirectories = subdirectories;
+		}
+	}
+}
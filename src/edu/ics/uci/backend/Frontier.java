@@ -14,7 +14,13 @@
 
 package edu.ics.uci.backend;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 
 import org.apache.log4j.Logger;
 
@@ -31,45 +37,264 @@ public class Frontier extends Configurable {
 	
 	private static final Logger logger = Logger.getLogger(Frontier.class.getName());
 	
+	private static final double SEEN_FILTER_FALSE_POSITIVE_RATE = 0.01;
+	
+	/**
+	 * The journal is never compacted before it holds this many keys.
+	 */
+	private static final long MIN_COMPACTION_KEYS = 1 << 20;
+	
+	/**
+	 * A journaled crawl checkpoints at least every time this many more files
+	 * are seen, so the keys buffered for the journal stay bounded even
+	 * without a checkpoint interval.
+	 */
+	private static final long MAX_PENDING_KEYS = 1 << 20;
+	
+	/**
+	 * The name the file states of an incremental crawl are saved under.
+	 */
+	public static final String FILE_STATES_NAME = "states.ser";
+	
 	private Counters counters;
-	private ArrayList<Integer> seenFiles;
+	private LongSet seenFiles;
+	
+	/**
+	 * Files claimed by a crawler but not yet processed, by key. They only
+	 * join seenFiles once processed, so a checkpoint never saves a file
+	 * as seen before process() has run for it. Each maps to the file and
+	 * its depth if crawling is resumable with a work queue, else to null.
+	 */
+	private final HashMap<Long, InFlightFile> inFlight = new HashMap<Long, InFlightFile>();
+	
+	/**
+	 * Answers most seen() checks of new files without touching seenFiles.
+	 * Null unless an expected file count is set.
+	 */
+	private BloomFilter seenFilter;
+	
+	/**
+	 * Records the seen files added since files.ser was last written.
+	 * Null unless crawling is resumable and seenFiles is on the heap.
+	 */
+	private Journal journal;
+	
+	/**
+	 * The number of seen files in files.ser when it was last written.
+	 */
+	private long snapshotSize = 0;
+	
+	/**
+	 * Saves this Frontier in the background.
+	 * Null until checkpointing starts, and unless crawling is resumable and
+	 * either a checkpoint interval is set or the seen files are journaled.
+	 */
+	private Checkpointer checkpointer;
+	
+	/**
+	 * Held while saving, so the checkpointer, shutDown() and sync()
+	 * never save the same files at once.
+	 */
+	private final Object syncLock = new Object();
 	
 	private boolean resumed;
 	
+	/**
+	 * The file states of the last incremental crawl.
+	 * Null unless crawling is incremental.
+	 */
+	private FileStateTable fileStates;
+	
+	/**
+	 * Groups the files processed by this crawl by size.
+	 * Null unless duplicate detection is enabled.
+	 */
+	private DuplicateFinder duplicateFinder;
+	
+	/**
+	 * What this run of the crawl has seen and how long it took.
+	 */
+	private final CrawlMetrics metrics = new CrawlMetrics();
+	
+	/**
+	 * Directories waiting to be crawled by the work queue traversal.
+	 */
+	private final ArrayDeque<DirProperties> workQueue = new ArrayDeque<DirProperties>();
+	
+	/**
+	 * Directories taken off the work queue but not yet completed.
+	 */
+	private final ArrayList<DirProperties> inProgress = new ArrayList<DirProperties>();
+	
+	/**
+	 * Fingerprints of every directory ever put on the work queue, saved
+	 * with the queue so a resumed crawl doesn't walk them again.
+	 * Null unless crawling is resumable.
+	 */
+	private LongHashSet scheduledDirs;
+	
+	/**
+	 * If true, the work queue hands out the newest directory first.
+	 */
+	private final boolean depthFirst;
+	
+	/**
+	 * The number of directories scheduled but not yet completed.
+	 */
+	private int activeDirs = 0;
+	
+	/**
+	 * Set once the crawl is asked to stop early.
+	 */
+	private volatile boolean stopped = false;
+	
+	private final Object mutex = new Object();
+	
 	public Frontier(CrawlConfig config) throws Exception {
 		super(config);
 		resumed = false;
+		TraversalOrder order = config.getTraversalOrder();
+		depthFirst = order == TraversalOrder.DEPTH_FIRST ||
+				(order == TraversalOrder.RECURSIVE && config.getNumberOfCrawlers() == 1);
 		if(config.isResumableCrawling()) {
 			loadData();
 		} else {
 			counters = new Counters();
-			seenFiles = new ArrayList<Integer>();
+			counters.setFileIdentity(config.getFileIdentity());
+			if(config.isMemoryMappedSeenFiles()) {
+				seenFiles = new MappedLongHashSet(new File(config.getCrawlStorageFolder() + "/files.map"));
+			} else {
+				seenFiles = new LongHashSet();
+			}
+		}
+		if(config.isDuplicateDetection()) {
+			duplicateFinder = new DuplicateFinder(config.getMinDuplicateSize(),
+					new File(config.getCrawlStorageFolder() + "/duplicates.tmp"));
+		}
+		if(config.isIncrementalCrawling()) {
+			loadFileStates();
+		}
+		if(config.getProgressFileCount() > 0) {
+			counters.setExpectedFileCount(config.getProgressFileCount());
+		} else if(counters.getExpectedFileCount() == 0 && fileStates != null) {
+			/*
+			 * Expect as many files as the last crawl processed.
+			 */
+			counters.setExpectedFileCount(fileStates.size());
+		}
+		if(config.getExpectedFileCount() > 0) {
+			long expected = Math.max(config.getExpectedFileCount(), seenFiles.size() * 2);
+			seenFilter = new BloomFilter(expected, SEEN_FILTER_FALSE_POSITIVE_RATE);
+			seenFiles.forEach(seenFilter::put);
 		}
 	}
 	
-	@SuppressWarnings("unchecked")
 	private void loadData() throws Exception {
 		counters = null;
-		if(IO.exists(config.getCrawlStorageFolder() + "/counters.ser")) {
+		if(IO.isSaved(config.getCrawlStorageFolder() + "/counters.ser")) {
 			counters = (Counters) IO.load(config.getCrawlStorageFolder() + "/counters.ser");
-			if(!counters.getPathToDirectory().equalsIgnoreCase(config.getPathToDirectory())) {
-				String counterPath = counters.getPathToDirectory();
-				String configPath = config.getPathToDirectory();
-				throw new Exception("\nThe config's top path (" + configPath + ") is not the same " +
-				"as the path from the previous crawl: " + counterPath + ".\nSpecify the same path " +
-				"or use a different crawl storage folder.");
+			if(counters == null) {
+				throw new Exception("\nThe counters in " + config.getCrawlStorageFolder() + " are corrupt " +
+				"and have no good previous generation.\nUse a different crawl storage folder.");
 			}
 			resumed = true;
 		} else {
 			counters = new Counters();
 			counters.setPathToDirectory(config.getPathToDirectory());
+			counters.setFileIdentity(config.getFileIdentity());
 		}
 		seenFiles = null;
-		if(IO.exists(config.getCrawlStorageFolder() + "/files.ser")) {
-			seenFiles = (ArrayList<Integer>) IO.load(config.getCrawlStorageFolder() + "/files.ser");
+		if(config.isMemoryMappedSeenFiles()) {
+			/*
+			 * The mapped file is the saved state, opening it is all it takes to resume.
+			 */
+			if(IO.exists(config.getCrawlStorageFolder() + "/files.map")) {
+				resumed = true;
+			}
+			seenFiles = new MappedLongHashSet(new File(config.getCrawlStorageFolder() + "/files.map"));
+		} else if(IO.isSaved(config.getCrawlStorageFolder() + "/files.ser")) {
+			Object files = IO.load(config.getCrawlStorageFolder() + "/files.ser");
+			if(files == null) {
+				throw new Exception("\nThe seen files in " + config.getCrawlStorageFolder() + " are corrupt " +
+				"and have no good previous generation.\nUse a different crawl storage folder.");
+			}
+			if(!(files instanceof LongHashSet)) {
+				/*
+				 * Older crawl data keyed files by 32-bit path hashes,
+				 * which can't be turned into the current keys.
+				 */
+				throw new Exception("\nThe crawl data in " + config.getCrawlStorageFolder() + " was saved " +
+				"by an older version and can't be resumed.\nUse a different crawl storage folder.");
+			}
+			seenFiles = (LongHashSet) files;
+			snapshotSize = seenFiles.size();
 			resumed = true;
 		} else {
-			seenFiles = new ArrayList<Integer>();
+			seenFiles = new LongHashSet();
+		}
+		if(!config.isMemoryMappedSeenFiles()) {
+			journal = new Journal(new File(config.getCrawlStorageFolder() + "/files.journal"));
+			Counters journaled = journal.replay(seenFiles);
+			if(journal.getKeyCount() > 0) {
+				resumed = true;
+			}
+			if(journaled != null && journaled.getCheckpoint() > counters.getCheckpoint()) {
+				counters = journaled;
+				resumed = true;
+			}
+		}
+		if(isWorkQueueTraversal()) {
+			loadDirectories();
+		}
+		if(!counters.getPathToDirectory().equalsIgnoreCase(config.getPathToDirectory())) {
+			String counterPath = counters.getPathToDirectory();
+			String configPath = config.getPathToDirectory();
+			throw new Exception("\nThe config's top path (" + configPath + ") is not the same " +
+			"as the path from the previous crawl: " + counterPath + ".\nSpecify the same path " +
+			"or use a different crawl storage folder.");
+		}
+		if(counters.getFileIdentity() != config.getFileIdentity()) {
+			throw new Exception("\nThe config's file identity (" + config.getFileIdentity() + ") is not " +
+			"the same as the file identity from the previous crawl: " + counters.getFileIdentity() +
+			".\nSpecify the same file identity or use a different crawl storage folder.");
+		}
+	}
+	
+	/**
+	 * Put the directories saved in dirs.ser back on the work queue.
+	 * A crawl without them starts over from the top directory.
+	 */
+	private void loadDirectories() {
+		scheduledDirs = new LongHashSet();
+		if(!IO.isSaved(config.getCrawlStorageFolder() + "/dirs.ser")) {
+			return;
+		}
+		PendingDirectories pending = (PendingDirectories) IO.load(config.getCrawlStorageFolder() + "/dirs.ser");
+		if(pending == null) {
+			logger.warn("The pending directories are corrupt, crawling from the top directory");
+			return;
+		}
+		scheduledDirs = pending.getScheduledDirs();
+		for(int i = 0; i < pending.size(); i++) {
+			workQueue.addLast(new DirProperties(new File(pending.getPath(i)), pending.getDepth(i)));
+		}
+		activeDirs = pending.size();
+		resumed = true;
+		logger.info("Resuming from " + pending.size() + " pending directories");
+	}
+	
+	private void loadFileStates() {
+		String filename = config.getCrawlStorageFolder() + "/" + FILE_STATES_NAME;
+		if(IO.isSaved(filename)) {
+			fileStates = (FileStateTable) IO.load(filename);
+			if(fileStates == null) {
+				logger.warn("The file states of the last crawl are corrupt, processing every file");
+			} else {
+				logger.info("Loaded the states of " + fileStates.size() + " files from the last crawl");
+			}
+		}
+		if(fileStates == null) {
+			fileStates = new FileStateTable();
 		}
 	}
 	
@@ -81,11 +306,11 @@ public class Frontier extends Configurable {
 		counters.incrementSkippedDirs();
 	}
 	
-	public int getSeenDirCount() {
+	public long getSeenDirCount() {
 		return counters.getVisitedDirCount();
 	}
 	
-	public int getSkippedDirCount() {
+	public long getSkippedDirCount() {
 		return counters.getSkippedDirCount();
 	}
 	
@@ -101,16 +326,32 @@ public class Frontier extends Configurable {
 		return counters.getPathToDirectory();
 	}
 	
-	public int getProcessedFileCount() {
+	public long getProcessedFileCount() {
 		return counters.getProcessedFileCount();
 	}
 	
-	public int getSkippedFileCount() {
+	public long getSkippedFileCount() {
 		return counters.getSkippedFileCount();
 	}
 	
-	public int getSeenFileCount() {
-		return seenFiles.size();
+	public long getSeenFileCount() {
+		synchronized(seenFiles) {
+			return seenFiles.size();
+		}
+	}
+	
+	/**
+	 * Return the bytes taken up by the seen files and the Bloom filter in front of them.
+	 */
+	public long getSeenFilesFootprint() {
+		long footprint;
+		synchronized(seenFiles) {
+			footprint = seenFiles.getFootprint();
+		}
+		if(seenFilter != null) {
+			footprint += seenFilter.getBitCount() >>> 3;
+		}
+		return footprint;
 	}
 	
 	public boolean isFinished() {
@@ -121,13 +362,273 @@ public class Frontier extends Configurable {
 		return resumed;
 	}
 	
-	public boolean seen(int hash) {
-		return seenFiles.contains(hash);
+	public boolean seen(long key) {
+		synchronized(seenFiles) {
+			if(inFlight.containsKey(key)) {
+				return true;
+			}
+			if(seenFilter == null) {
+				return seenFiles.contains(key);
+			}
+			if(!seenFilter.mightContain(key)) {
+				return false;
+			}
+			boolean seen = seenFiles.contains(key);
+			if(!seen) {
+				seenFilter.falsePositive();
+			}
+			return seen;
+		}
+	}
+	
+	/**
+	 * Claim a file for processing, returning false if it was already seen
+	 * or claimed. Checking and claiming under one lock means two crawlers
+	 * reaching the same file, such as two hard links to it, can't both
+	 * process it. Call add() once the file is processed or skipped.
+	 */
+	public boolean claim(long key, File file, int depth) {
+		return claim(key, file, depth, false);
+	}
+	
+	/**
+	 * Claim a file for processing, even if it was already seen when force
+	 * is set. Returns false while the file is claimed, force or not, so a
+	 * file is never processed twice at once.
+	 */
+	public boolean claim(long key, File file, int depth, boolean force) {
+		synchronized(seenFiles) {
+			if(inFlight.containsKey(key)) {
+				return false;
+			}
+			if(!force && (seenFilter == null || seenFilter.mightContain(key))) {
+				if(seenFiles.contains(key)) {
+					return false;
+				}
+				if(seenFilter != null) {
+					seenFilter.falsePositive();
+				}
+			}
+			inFlight.put(key, scheduledDirs != null ? new InFlightFile(file, depth) : null);
+			return true;
+		}
+	}
+	
+	/**
+	 * Release a file's claim without adding it to the seen files,
+	 * for a file whose processing failed.
+	 */
+	public void release(long key) {
+		synchronized(seenFiles) {
+			inFlight.remove(key);
+		}
+	}
+	
+	/**
+	 * Add a file's key to the seen files, releasing its claim, and return
+	 * false if it was already there.
+	 */
+	public boolean add(long key) {
+		boolean added;
+		synchronized(seenFiles) {
+			inFlight.remove(key);
+			added = seenFiles.add(key);
+			if(added) {
+				if(journal != null) {
+					journal.add(key);
+				}
+				if(seenFilter != null) {
+					seenFilter.put(key);
+				}
+			}
+		}
+		if(added && checkpointer != null) {
+			checkpointer.fileAdded();
+		}
+		return added;
+	}
+	
+	/**
+	 * Remove a deleted file's key from the seen files, so a file created
+	 * in its place is crawled again, also by a resumed crawl. The Bloom
+	 * filter keeps the key, but seen() checks the seen files behind it.
+	 */
+	public boolean remove(long key) {
+		synchronized(seenFiles) {
+			boolean removed = seenFiles.remove(key);
+			if(removed && journal != null) {
+				journal.remove(key);
+			}
+			return removed;
+		}
+	}
+	
+	/**
+	 * Add a directory to the shared work queue.
+	 */
+	public boolean schedule(File dir, int depth) {
+		return schedule(new DirProperties(dir, depth));
+	}
+	
+	/**
+	 * Add a directory to the shared work queue, keeping any attributes it carries.
+	 * Returns false if the queue already holds the maximum number of pending
+	 * directories, in which case the caller crawls the directory itself.
+	 */
+	public boolean schedule(DirProperties dirProperties) {
+		long fingerprint = 0;
+		if(scheduledDirs != null) {
+			fingerprint = Parser.getFingerprint(dirProperties.getFile().getAbsolutePath());
+		}
+		synchronized(mutex) {
+			if(scheduledDirs != null && scheduledDirs.contains(fingerprint)) {
+				/*
+				 * Already walked, or still pending, from before the crawl was resumed.
+				 */
+				return true;
+			}
+			int maxPending = config.getMaxPendingDirectories();
+			if(maxPending > 0 && workQueue.size() >= maxPending) {
+				return false;
+			}
+			if(scheduledDirs != null) {
+				scheduledDirs.add(fingerprint);
+			}
+			if(depthFirst) {
+				workQueue.addFirst(dirProperties);
+			} else {
+				workQueue.addLast(dirProperties);
+			}
+			activeDirs++;
+			mutex.notify();
+			return true;
+		}
+	}
+	
+	/**
+	 * Return true if directories are crawled from the work queue
+	 * rather than recursively. A resumable crawl keeps the configured
+	 * order; only a work queue crawl saves its pending directories.
+	 */
+	public final boolean isWorkQueueTraversal() {
+		if(config.getForkJoinParallelism() > 0) {
+			return false;
+		}
+		return config.getNumberOfCrawlers() > 1 || config.getTraversalOrder() != TraversalOrder.RECURSIVE;
 	}
-
 	
-	public void add(int hash) {
-		seenFiles.add(hash);
+	/**
+	 * Return the number of directories waiting on the work queue.
+	 */
+	public int getPendingDirCount() {
+		synchronized(mutex) {
+			return workQueue.size();
+		}
+	}
+	
+	/**
+	 * Take the next directory off the work queue, waiting if other
+	 * crawlers may still schedule more. Returns null once every
+	 * scheduled directory has been completed.
+	 */
+	public DirProperties getNextDirectory() throws InterruptedException {
+		synchronized(mutex) {
+			while(workQueue.isEmpty() || stopped) {
+				if(activeDirs == 0 || stopped) {
+					return null;
+				}
+				mutex.wait();
+			}
+			DirProperties dirProperties = workQueue.removeFirst();
+			if(scheduledDirs != null) {
+				inProgress.add(dirProperties);
+			}
+			return dirProperties;
+		}
+	}
+	
+	/**
+	 * Stop handing out directories, so crawlers stop once they finish the
+	 * directory they are in. Directories left in the work queue are kept
+	 * for a resumable crawl to pick up.
+	 */
+	public void stop() {
+		synchronized(mutex) {
+			stopped = true;
+			mutex.notifyAll();
+		}
+		logger.info("Frontier signaled stop");
+	}
+	
+	public boolean isStopped() {
+		return stopped;
+	}
+	
+	/**
+	 * Return the number of directories crawlers took off the work queue and
+	 * are still crawling, or 0 if crawling isn't resumable.
+	 */
+	public int getInProgressDirCount() {
+		synchronized(mutex) {
+			return inProgress.size();
+		}
+	}
+	
+	/**
+	 * Signal that a directory taken from the work queue is done.
+	 */
+	public void completed(DirProperties dirProperties) {
+		synchronized(mutex) {
+			if(scheduledDirs != null) {
+				inProgress.remove(dirProperties);
+			}
+			activeDirs--;
+			if(activeDirs == 0) {
+				mutex.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * Return the file states of the last incremental crawl, or null if crawling isn't incremental.
+	 */
+	public FileStateTable getFileStates() {
+		return fileStates;
+	}
+	
+	/**
+	 * Return the number of files the crawl is expected to see in all, or 0 if unknown.
+	 */
+	public long getExpectedFileCount() {
+		return counters.getExpectedFileCount();
+	}
+	
+	public void setExpectedFileCount(long expectedFileCount) {
+		counters.setExpectedFileCount(expectedFileCount);
+	}
+	
+	public CrawlMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Return the duplicate finder, or null if duplicate detection isn't enabled.
+	 */
+	public DuplicateFinder getDuplicateFinder() {
+		return duplicateFinder;
+	}
+	
+	/**
+	 * Save the file states for the next incremental crawl.
+	 */
+	public void syncFileStates() {
+		if(fileStates != null) {
+			IO.save(fileStates, config.getCrawlStorageFolder() + "/" + FILE_STATES_NAME);
+		}
+	}
+	
+	public BloomFilter getSeenFilter() {
+		return seenFilter;
 	}
 	
 	public void setMaxDepth(int maxDepth) {
@@ -138,6 +639,13 @@ public class Frontier extends Configurable {
 		return counters.getMaxDepth();
 	}
 	
+	/**
+	 * Return a copy of the counters, taken at once.
+	 */
+	public Counters getCounters() {
+		return counters.snapshot();
+	}
+	
 	public void finished() {
 		counters.finished();
 		logger.info("Frontier signaled finished");
@@ -145,18 +653,206 @@ public class Frontier extends Configurable {
 		
 	public void syncCounters() {
 		if(config.isResumableCrawling()) {
-			IO.save(counters, config.getCrawlStorageFolder() + "/counters.ser");
+			synchronized(syncLock) {
+				if(journal != null) {
+					commitJournal();
+				} else {
+					counters.nextCheckpoint();
+					IO.save(counters.snapshot(), config.getCrawlStorageFolder() + "/counters.ser");
+				}
+			}
 		}
 	}
 	
 	public void syncFiles() {
 		if(config.isResumableCrawling()) {
-			IO.save(seenFiles, config.getCrawlStorageFolder() + "/files.ser");
+			synchronized(syncLock) {
+				if(journal != null) {
+					commitJournal();
+				} else {
+					((MappedLongHashSet) seenFiles).sync();
+				}
+			}
 		}
 	}
 	
 	public void syncAll() {
-		syncCounters();
-		syncFiles();
+		synchronized(syncLock) {
+			/*
+			 * Take the pending directories before saving the seen files, so every
+			 * directory left out of them has its files in the saved seen files.
+			 */
+			PendingDirectories pending = getPendingDirectories();
+			if(journal != null) {
+				if(config.isResumableCrawling()) {
+					commitJournal();
+				}
+			} else {
+				syncCounters();
+				syncFiles();
+			}
+			if(pending != null) {
+				IO.save(pending, config.getCrawlStorageFolder() + "/dirs.ser");
+			}
+		}
+	}
+	
+	/**
+	 * Return a copy of the directories not yet completed, those being crawled
+	 * first, then those holding files not yet processed, or null if crawling
+	 * is not resumable.
+	 */
+	private PendingDirectories getPendingDirectories() {
+		if(scheduledDirs == null) {
+			return null;
+		}
+		PendingDirectories pending;
+		synchronized(mutex) {
+			int size = inProgress.size() + workQueue.size();
+			String[] paths = new String[size];
+			int[] depths = new int[size];
+			int i = 0;
+			for(DirProperties dirProperties : inProgress) {
+				paths[i] = dirProperties.getFile().getPath();
+				depths[i++] = dirProperties.getDepth();
+			}
+			Iterator<DirProperties> queued = workQueue.iterator();
+			while(queued.hasNext()) {
+				DirProperties dirProperties = queued.next();
+				paths[i] = dirProperties.getFile().getPath();
+				depths[i++] = dirProperties.getDepth();
+			}
+			pending = new PendingDirectories(paths, depths, scheduledDirs.copy());
+		}
+		/*
+		 * The directories of files still being processed are crawled again,
+		 * as their files won't be in the saved seen files. Taking these after
+		 * the work queue means a directory completed in between is caught here.
+		 */
+		ArrayList<InFlightFile> files = new ArrayList<InFlightFile>();
+		synchronized(seenFiles) {
+			files.addAll(inFlight.values());
+		}
+		if(files.isEmpty()) {
+			return pending;
+		}
+		HashSet<String> dirs = new HashSet<String>();
+		ArrayList<String> paths = new ArrayList<String>();
+		ArrayList<Integer> depths = new ArrayList<Integer>();
+		for(int i = 0; i < pending.size(); i++) {
+			dirs.add(pending.getPath(i));
+			paths.add(pending.getPath(i));
+			depths.add(pending.getDepth(i));
+		}
+		for(InFlightFile file : files) {
+			File dir = file.file.getAbsoluteFile().getParentFile();
+			if(dir != null && dirs.add(dir.getPath())) {
+				paths.add(dir.getPath());
+				depths.add(Math.max(0, file.depth - 2));
+			}
+		}
+		int[] depthArray = new int[depths.size()];
+		for(int i = 0; i < depthArray.length; i++) {
+			depthArray[i] = depths.get(i);
+		}
+		return new PendingDirectories(paths.toArray(new String[paths.size()]), depthArray, pending.getScheduledDirs());
+	}
+	
+	/**
+	 * A claimed file, kept so its directory can be crawled again after a crash.
+	 */
+	private static class InFlightFile {
+		
+		private final File file;
+		
+		/**
+		 * The depth the file was crawled at, two more than its directory's.
+		 */
+		private final int depth;
+		
+		private InFlightFile(File file, int depth) {
+			this.file = file;
+			this.depth = depth;
+		}
+	}
+	
+	/**
+	 * Append the seen files added since the last commit and the counters
+	 * to the journal. Once the journal holds more keys than files.ser,
+	 * compact it into a new files.ser.
+	 */
+	private void commitJournal() {
+		try {
+			counters.nextCheckpoint();
+			journal.commit(counters);
+			if(journal.getKeyCount() > Math.max(MIN_COMPACTION_KEYS, snapshotSize)) {
+				compactJournal();
+			}
+		} catch (IOException e) {
+			logger.error("Caught IOException trying to commit the journal: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Write every seen file and the counters out in full, then empty the journal.
+	 * Crawlers only wait while the seen files are copied, not while they are saved.
+	 */
+	private void compactJournal() throws IOException {
+		journal.lockWrites();
+		try {
+			LongHashSet snapshot;
+			long[] taken;
+			synchronized(seenFiles) {
+				snapshot = ((LongHashSet) seenFiles).copy();
+				taken = journal.takePending();
+			}
+			counters.nextCheckpoint();
+			boolean saved = IO.save(counters.snapshot(), config.getCrawlStorageFolder() + "/counters.ser");
+			if(!saved || !IO.save(snapshot, config.getCrawlStorageFolder() + "/files.ser")) {
+				/*
+				 * Keep the journal and hand back the keys taken for the snapshot,
+				 * so the next commit still writes them.
+				 */
+				for(int i = 0; i < taken.length; i++) {
+					journal.add(taken[i]);
+				}
+				throw new IOException("Couldn't save a snapshot to compact the journal into");
+			}
+			journal.truncate();
+			snapshotSize = snapshot.size();
+		} finally {
+			journal.unlockWrites();
+		}
+		logger.info("Compacted the journal into " + snapshotSize + " seen files");
+	}
+	
+	/**
+	 * Start saving this Frontier in the background, if a checkpoint interval is set.
+	 */
+	public void startCheckpointing() {
+		long fileInterval = config.getCheckpointFileInterval();
+		if(journal != null) {
+			fileInterval = fileInterval > 0 ? Math.min(fileInterval, MAX_PENDING_KEYS) : MAX_PENDING_KEYS;
+		}
+		if(config.isResumableCrawling() && (fileInterval > 0 || config.getCheckpointTimeInterval() > 0)) {
+			checkpointer = new Checkpointer(this, fileInterval, config.getCheckpointTimeInterval());
+			checkpointer.start();
+		}
+	}
+	
+	/**
+	 * Stop saving this Frontier in the background.
+	 */
+	public void stopCheckpointing() throws InterruptedException {
+		if(checkpointer != null) {
+			checkpointer.stop();
+		}
+	}
+	
+	/**
+	 * Return the background checkpointer, or null if there is none.
+	 */
+	public Checkpointer getCheckpointer() {
+		return checkpointer;
 	}
 }
@@ -0,0 +1,103 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The digests the hashing stage can compute over a file's contents.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public enum HashAlgorithm {
+	
+	/**
+	 * A cryptographic digest, for when a collision must never happen.
+	 */
+	SHA_256 {
+		@Override
+		public Hasher newHasher() {
+			final MessageDigest digest;
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-256 is not available", e);
+			}
+			return new Hasher() {
+				public void update(ByteBuffer input) {
+					digest.update(input);
+				}
+				
+				public byte[] digest() {
+					return digest.digest();
+				}
+			};
+		}
+	},
+	
+	/**
+	 * A fast 64-bit hash, for telling files apart.
+	 */
+	XXHASH64 {
+		@Override
+		public Hasher newHasher() {
+			return new XxHash64();
+		}
+	},
+	
+	/**
+	 * A 32-bit checksum with hardware support, for catching corruption.
+	 */
+	CRC32C {
+		@Override
+		public Hasher newHasher() {
+			final java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+			return new Hasher() {
+				public void update(ByteBuffer input) {
+					crc.update(input);
+				}
+				
+				public byte[] digest() {
+					int value = (int) crc.getValue();
+					return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+				}
+			};
+		}
+	};
+	
+	/**
+	 * Computes one digest over input given in any number of pieces.
+	 */
+	public interface Hasher {
+		
+		/**
+		 * Add the remaining bytes of input, leaving it with none remaining.
+		 */
+		void update(ByteBuffer input);
+		
+		byte[] digest();
+	}
+	
+	/**
+	 * Return a new hasher for this algorithm.
+	 */
+	public abstract Hasher newHasher();
+}
@@ -15,6 +15,12 @@
 package edu.ics.uci.backend;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
 
 import org.apache.log4j.Logger;
 
@@ -28,15 +34,45 @@ import org.apache.log4j.Logger;
 public class IO {
 	
 	private static Logger logger = Logger.getLogger(IO.class.getName());
+	
+	/**
+	 * Marks the end of a footer written by save().
+	 */
+	private static final int FOOTER_MAGIC = 0x66633463;
+	
+	/**
+	 * The payload length, its CRC32C and FOOTER_MAGIC.
+	 */
+	private static final int FOOTER_SIZE = 16;
+	
+	/**
+	 * Appended to a file's name to name its previous generation.
+	 */
+	private static final String PREVIOUS_SUFFIX = ".1";
+	
+	/**
+	 * Held while save() renames files into place.
+	 */
+	private static final Object renameLock = new Object();
 
 	public static boolean deleteFolder(File folder) {
 		return deleteFolderContents(folder) && folder.delete();
 	}
 	
 	public static boolean deleteFolderContents(File folder) {
+		return deleteFolderContents(folder, null);
+	}
+	
+	/**
+	 * Delete the contents of a folder, except the files whose names start with keepPrefix.
+	 */
+	public static boolean deleteFolderContents(File folder, String keepPrefix) {
 		System.out.println("Deleting content of: " + folder.getAbsolutePath());
 		File[] files = folder.listFiles();
 		for (File file : files) {
+			if (keepPrefix != null && file.getName().startsWith(keepPrefix)) {
+				continue;
+			}
 			if (file.isFile()) {
 				if (!file.delete()) {
 					return false;
@@ -50,34 +86,247 @@ public class IO {
 		return true;
 	}
 	
-	public static void save(Object o, String filename) {
+	/**
+	 * Save an object so that a crash never leaves a half-written file behind.
+	 * The object is written to a temporary file with a CRC32C footer and
+	 * forced to disk. The current file is kept as the previous generation,
+	 * then the temporary file is atomically renamed into place. Each save
+	 * gets a temporary file of its own, and the renames happen under one
+	 * lock, so two saves of the same file never step on each other.
+	 * Returns false if the object couldn't be saved.
+	 */
+	public static boolean save(Object o, String filename) {
+		File file = new File(filename);
+		File previous = new File(filename + PREVIOUS_SUFFIX);
+		File temp = null;
 		FileOutputStream fos = null;
-		ObjectOutputStream oos = null;
 		try {
-			fos = new FileOutputStream(filename);
-			oos = new ObjectOutputStream(fos);
+			temp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName() + ".", ".tmp").toFile();
+			fos = new FileOutputStream(temp);
+			CRC32C crc = new CRC32C();
+			CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(fos));
+			ObjectOutputStream oos = new ObjectOutputStream(new CheckedOutputStream(counter, crc));
 			oos.writeObject(o);
+			oos.flush();
+			DataOutputStream footer = new DataOutputStream(counter);
+			footer.writeLong(counter.getCount());
+			footer.writeInt((int) crc.getValue());
+			footer.writeInt(FOOTER_MAGIC);
+			footer.flush();
+			fos.getFD().sync();
+			fos.close();
+			fos = null;
+			synchronized(renameLock) {
+				if(file.exists()) {
+					Files.move(file.toPath(), previous.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				temp = null;
+			}
+			syncDirectory(file.getAbsoluteFile().getParentFile());
+			return true;
 		} catch(IOException e) {
 			logger.error("Caught IOException trying to save: " + filename);
+			return false;
+		} finally {
+			close(fos);
+			if(temp != null) {
+				temp.delete();
+			}
 		}
 	}
 	
+	/**
+	 * Load an object saved with save(). If the file is missing or fails its
+	 * checksum, the previous generation is loaded instead.
+	 * Returns null if neither could be loaded.
+	 */
 	public static Object load(String filename) {
+		Object toReturn = loadGeneration(filename);
+		if(toReturn == null && new File(filename + PREVIOUS_SUFFIX).exists()) {
+			logger.warn("Falling back to the previous generation of: " + filename);
+			toReturn = loadGeneration(filename + PREVIOUS_SUFFIX);
+		}
+		return toReturn;
+	}
+	
+	/**
+	 * Return true if a generation of this file was saved.
+	 */
+	public static boolean isSaved(String filename) {
+		return exists(filename) || exists(filename + PREVIOUS_SUFFIX);
+	}
+	
+	private static Object loadGeneration(String filename) {
+		File file = new File(filename);
+		if(!file.exists()) {
+			return null;
+		}
 		Object toReturn = null;
-		FileInputStream fis = null;
-		ObjectInputStream ois = null;
+		InputStream in = null;
 		try {
-			fis = new FileInputStream(filename);
-			ois = new ObjectInputStream(fis);
+			long payloadLength = verify(file);
+			if(payloadLength < 0) {
+				logger.warn("No checksum found, loading as saved by an older version: " + filename);
+				payloadLength = file.length();
+			}
+			in = new BufferedInputStream(new FileInputStream(file));
+			ObjectInputStream ois = new ObjectInputStream(new LimitedInputStream(in, payloadLength));
 			toReturn = ois.readObject();
 		} catch(IOException e) {
-			logger.error("Caught IOException trying to load: " + filename);
+			logger.error("Caught IOException trying to load: " + filename + " (" + e.getMessage() + ")");
 		} catch(ClassNotFoundException e) {
 			logger.error("Caught ClassNotFoundException trying to load: " + filename);
+		} finally {
+			close(in);
 		}
 		return toReturn;
 	}
 	
+	/**
+	 * Check the file's CRC32C footer and return the length of the data before it,
+	 * or -1 if the file has no footer.
+	 */
+	private static long verify(File file) throws IOException {
+		long length = file.length();
+		if(length < FOOTER_SIZE) {
+			return -1;
+		}
+		long payloadLength;
+		int checksum;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			raf.seek(length - FOOTER_SIZE);
+			payloadLength = raf.readLong();
+			checksum = raf.readInt();
+			if(raf.readInt() != FOOTER_MAGIC) {
+				return -1;
+			}
+		} finally {
+			raf.close();
+		}
+		if(payloadLength != length - FOOTER_SIZE) {
+			throw new IOException("Length doesn't match its footer");
+		}
+		CRC32C crc = new CRC32C();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[1 << 16];
+			long remaining = payloadLength;
+			while(remaining > 0) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if(read < 0) {
+					throw new EOFException();
+				}
+				crc.update(buffer, 0, read);
+				remaining -= read;
+			}
+		} finally {
+			in.close();
+		}
+		if((int) crc.getValue() != checksum) {
+			throw new IOException("Checksum doesn't match its footer");
+		}
+		return payloadLength;
+	}
+	
+	/**
+	 * Force a directory's entries to disk so a rename survives a crash.
+	 * Not every platform can open a directory, which is not an error.
+	 */
+	private static void syncDirectory(File dir) {
+		try {
+			FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		} catch(IOException e) {
+			logger.debug("Couldn't sync directory: " + dir.getPath());
+		}
+	}
+	
+	private static void close(Closeable closeable) {
+		if(closeable != null) {
+			try {
+				closeable.close();
+			} catch(IOException e) {
+				logger.error("Caught IOException trying to close a stream");
+			}
+		}
+	}
+	
+	/**
+	 * Counts the bytes written through it.
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		
+		private long count = 0;
+		
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+		
+		private long getCount() {
+			return count;
+		}
+	}
+	
+	/**
+	 * Stops reading at a given length, so the footer is never deserialized.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		
+		private long remaining;
+		
+		private LimitedInputStream(InputStream in, long limit) {
+			super(in);
+			this.remaining = limit;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if(remaining <= 0) {
+				return -1;
+			}
+			int b = in.read();
+			if(b >= 0) {
+				remaining--;
+			}
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(remaining <= 0) {
+				return -1;
+			}
+			int read = in.read(b, off, (int) Math.min(len, remaining));
+			if(read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+	}
+	
 	public static boolean exists(String filename) {
 		File file = new File(filename);
 		return file.exists();
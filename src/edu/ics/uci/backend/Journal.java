@@ -0,0 +1,347 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+import org.apache.log4j.Logger;
+
+/**
+ * An append-only journal of the files the Frontier has seen since its
+ * last full snapshot. Each commit appends only the keys added and removed
+ * since the previous commit plus the current counters, so the cost of a
+ * commit scales with the work done since the last one, not with the crawl size.
+ * 
+ * Every record is checksummed. Replaying stops at the first torn or
+ * corrupt record, which is what a crash in the middle of a commit leaves.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class Journal {
+	
+	private static final Logger logger = Logger.getLogger(Journal.class.getName());
+	
+	private static final byte KEYS = 1;
+	private static final byte COUNTERS = 2;
+	private static final byte REMOVED_KEYS = 3;
+	
+	private final File file;
+	
+	/**
+	 * Keys added since the last commit.
+	 */
+	private LongHashSet pendingKeys = new LongHashSet();
+	
+	/**
+	 * Keys removed since the last commit. A key is never pending
+	 * both added and removed, so their order doesn't matter.
+	 */
+	private LongHashSet removedKeys = new LongHashSet(16);
+	
+	/**
+	 * Keys written to the journal since it was last reset.
+	 */
+	private long keyCount = 0;
+	
+	/**
+	 * Serializes commits and compactions.
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+	
+	public Journal(File file) {
+		this.file = file;
+	}
+	
+	/**
+	 * Buffer a key until the next commit.
+	 */
+	public synchronized void add(long key) {
+		removedKeys.remove(key);
+		pendingKeys.add(key);
+	}
+	
+	/**
+	 * Buffer the removal of a key until the next commit.
+	 */
+	public synchronized void remove(long key) {
+		pendingKeys.remove(key);
+		removedKeys.add(key);
+	}
+	
+	private static long[] toArray(LongHashSet keys) {
+		final long[] array = new long[(int) keys.size()];
+		keys.forEach(new LongConsumer() {
+			private int i = 0;
+			
+			public void accept(long key) {
+				array[i++] = key;
+			}
+		});
+		return array;
+	}
+	
+	/**
+	 * Return the number of keys written to the journal since it was last reset.
+	 */
+	public long getKeyCount() {
+		writeLock.lock();
+		try {
+			return keyCount;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Hold off commits, for example while a full snapshot is being saved.
+	 */
+	public void lockWrites() {
+		writeLock.lock();
+	}
+	
+	public void unlockWrites() {
+		writeLock.unlock();
+	}
+	
+	/**
+	 * Append the buffered keys and a copy of the counters, then force them to disk.
+	 * Keys added while the commit is writing are kept for the next commit.
+	 * If the write fails, the journal is cut back to where the commit began
+	 * and its keys are buffered again, so the next commit retries them
+	 * rather than leaving a torn record in front of later ones.
+	 */
+	public void commit(Counters counters) throws IOException {
+		writeLock.lock();
+		try {
+			LongHashSet keys;
+			LongHashSet removed;
+			synchronized(this) {
+				keys = pendingKeys;
+				pendingKeys = new LongHashSet();
+				removed = removedKeys;
+				removedKeys = new LongHashSet(16);
+			}
+			int count = (int) keys.size();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(bytes);
+			oos.writeObject(counters.snapshot());
+			oos.close();
+			byte[] counterBytes = bytes.toByteArray();
+			long start = -1;
+			RandomAccessFile raf = null;
+			try {
+				raf = new RandomAccessFile(file, "rw");
+				FileChannel channel = raf.getChannel();
+				start = channel.size();
+				channel.position(start);
+				if(count > 0) {
+					ByteBuffer payload = ByteBuffer.allocate(count << 3);
+					payload.asLongBuffer().put(toArray(keys));
+					writeRecord(channel, KEYS, payload.array());
+				}
+				if(removed.size() > 0) {
+					ByteBuffer payload = ByteBuffer.allocate((int) removed.size() << 3);
+					payload.asLongBuffer().put(toArray(removed));
+					writeRecord(channel, REMOVED_KEYS, payload.array());
+				}
+				writeRecord(channel, COUNTERS, counterBytes);
+				channel.force(false);
+			} catch (IOException e) {
+				restore(keys, removed);
+				if(start >= 0) {
+					try {
+						raf.getChannel().truncate(start);
+					} catch (IOException truncateException) {
+						e.addSuppressed(truncateException);
+					}
+				}
+				throw e;
+			} finally {
+				if(raf != null) {
+					raf.close();
+				}
+			}
+			keyCount += count;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Buffer the keys of a failed commit again, leaving out those whose
+	 * addition or removal was undone since.
+	 */
+	private synchronized void restore(LongHashSet keys, LongHashSet removed) {
+		keys.forEach(key -> {
+			if(!removedKeys.contains(key)) {
+				pendingKeys.add(key);
+			}
+		});
+		removed.forEach(key -> {
+			if(!pendingKeys.contains(key)) {
+				removedKeys.add(key);
+			}
+		});
+	}
+	
+	/**
+	 * Remove and return the keys not yet committed.
+	 * Call this when taking a full snapshot that holds them.
+	 * Removals are kept, replaying them on the snapshot does no harm.
+	 */
+	public synchronized long[] takePending() {
+		long[] keys = toArray(pendingKeys);
+		pendingKeys = new LongHashSet();
+		return keys;
+	}
+	
+	/**
+	 * Empty the journal file. Call this, with writes locked since the
+	 * snapshot was taken, once the full snapshot has been saved.
+	 */
+	public void truncate() throws IOException {
+		writeLock.lock();
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(0);
+				raf.getChannel().force(true);
+			} finally {
+				raf.close();
+			}
+			keyCount = 0;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Add every journaled key to the set, less those journaled as removed
+	 * since, and return the newest counters
+	 * in the journal, or null if it holds none. A torn or corrupt tail is
+	 * cut off so later commits append after the last good record.
+	 */
+	public Counters replay(LongSet keys) throws IOException {
+		if(!file.exists()) {
+			return null;
+		}
+		Counters counters = null;
+		long goodLength = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while(true) {
+				byte type;
+				byte[] payload;
+				try {
+					type = in.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				try {
+					int length = in.readInt();
+					if(length < 0 || goodLength + 9 + length > file.length()) {
+						logger.warn("Journal record is torn, ignoring the rest of: " + file.getPath());
+						break;
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+					int checksum = in.readInt();
+					if(checksum != checksum(type, payload)) {
+						logger.warn("Journal record is corrupt, ignoring the rest of: " + file.getPath());
+						break;
+					}
+				} catch (EOFException e) {
+					logger.warn("Journal record is torn, ignoring the rest of: " + file.getPath());
+					break;
+				}
+				if(type == KEYS) {
+					ByteBuffer buffer = ByteBuffer.wrap(payload);
+					while(buffer.hasRemaining()) {
+						keys.add(buffer.getLong());
+						keyCount++;
+					}
+				} else if(type == REMOVED_KEYS) {
+					ByteBuffer buffer = ByteBuffer.wrap(payload);
+					while(buffer.hasRemaining()) {
+						keys.remove(buffer.getLong());
+					}
+				} else if(type == COUNTERS) {
+					counters = readCounters(payload);
+				}
+				goodLength += 9 + payload.length;
+			}
+		} finally {
+			in.close();
+		}
+		if(goodLength < file.length()) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(goodLength);
+			} finally {
+				raf.close();
+			}
+		}
+		return counters;
+	}
+	
+	private static void writeRecord(FileChannel channel, byte type, byte[] payload) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(9 + payload.length);
+		record.put(type);
+		record.putInt(payload.length);
+		record.put(payload);
+		record.putInt(checksum(type, payload));
+		record.flip();
+		while(record.hasRemaining()) {
+			channel.write(record);
+		}
+	}
+	
+	private static int checksum(byte type, byte[] payload) {
+		CRC32C crc = new CRC32C();
+		crc.update(type);
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+	
+	private static Counters readCounters(byte[] payload) throws IOException {
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload));
+		try {
+			return (Counters) ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Journal holds unknown counters", e);
+		} finally {
+			ois.close();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds, with buckets laid out like
+ * HdrHistogram's: values below 64 get a bucket each, and every power of
+ * two above is split into 32 buckets, so a percentile is never off by more
+ * than about 3% whatever its magnitude. Buckets are LongAdder cells, so
+ * any number of threads can record without contending.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	
+	/**
+	 * Larger values, about 18 minutes, are recorded as this.
+	 */
+	private static final long MAX_VALUE = (1L << 40) - 1;
+	
+	private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+	
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	
+	public LatencyHistogram() {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+	
+	public void record(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		buckets[indexOf(value)].increment();
+		count.increment();
+		total.add(value);
+		max.accumulate(value);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * Return the sum of every recorded latency, in nanoseconds.
+	 */
+	public long getTotal() {
+		return total.sum();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	public double getMean() {
+		long n = count.sum();
+		return n > 0 ? (double) total.sum() / n : 0;
+	}
+	
+	/**
+	 * Return the latency, in nanoseconds, that this fraction of
+	 * the recorded latencies are at or below, or 0 if none were recorded.
+	 */
+	public long getPercentile(double fraction) {
+		long[] counts = new long[BUCKET_COUNT];
+		long n = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets[i].sum();
+			n += counts[i];
+		}
+		if(n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(fraction, 1.0) * n));
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if(seen >= rank) {
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Return a copy that later records don't change.
+	 */
+	public LatencyHistogram snapshot() {
+		LatencyHistogram snapshot = new LatencyHistogram();
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot.buckets[i].add(buckets[i].sum());
+		}
+		snapshot.count.add(count.sum());
+		snapshot.total.add(total.sum());
+		snapshot.max.accumulate(max.get());
+		return snapshot;
+	}
+	
+	private static int indexOf(long value) {
+		if(value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return SUB_BUCKET_HALF * shift + (int) (value >>> shift);
+	}
+	
+	private static long upperBoundOf(int index) {
+		if(index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_HALF - 1;
+		long subBucket = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
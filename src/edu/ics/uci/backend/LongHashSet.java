@@ -0,0 +1,236 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive longs using open addressing with linear probing.
+ * Lookups and inserts never allocate, and with a maximum load factor
+ * of 0.75 each entry costs between 10.7 and 16 bytes.
+ * 
+ * This class is not thread-safe.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class LongHashSet implements LongSet, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private static final int MAX_CAPACITY = 1 << 30;
+	
+	/**
+	 * The slots of the table. 0 marks an empty slot,
+	 * so the key 0 itself is tracked by hasZero.
+	 */
+	private transient long[] keys;
+	private transient boolean hasZero;
+	private transient int size;
+	private transient int mask;
+	
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public LongHashSet(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+	
+	public boolean add(long key) {
+		if(key == 0) {
+			if(hasZero) {
+				return false;
+			}
+			hasZero = true;
+			size++;
+			return true;
+		}
+		int slot = (int) Parser.mix(key) & mask;
+		while(keys[slot] != 0) {
+			if(keys[slot] == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if(size == mask) {
+			throw new IllegalStateException("LongHashSet is full");
+		}
+		keys[slot] = key;
+		size++;
+		if(size > maxSize(keys.length) && keys.length < MAX_CAPACITY) {
+			rehash(keys.length << 1);
+		}
+		return true;
+	}
+	
+	public boolean contains(long key) {
+		if(key == 0) {
+			return hasZero;
+		}
+		int slot = (int) Parser.mix(key) & mask;
+		while(keys[slot] != 0) {
+			if(keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Slots after the removed key move back to fill the gap, so probing
+	 * never needs tombstones.
+	 */
+	public boolean remove(long key) {
+		if(key == 0) {
+			if(!hasZero) {
+				return false;
+			}
+			hasZero = false;
+			size--;
+			return true;
+		}
+		int slot = (int) Parser.mix(key) & mask;
+		while(keys[slot] != key) {
+			if(keys[slot] == 0) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int gap = slot;
+		slot = (slot + 1) & mask;
+		while(keys[slot] != 0) {
+			int home = (int) Parser.mix(keys[slot]) & mask;
+			/*
+			 * Move the key back unless its home slot lies after the gap,
+			 * in probing order, up to where it sits now.
+			 */
+			if(((slot - home) & mask) >= ((slot - gap) & mask)) {
+				keys[gap] = keys[slot];
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[gap] = 0;
+		size--;
+		return true;
+	}
+	
+	public long size() {
+		return size;
+	}
+	
+	public long getFootprint() {
+		return (long) keys.length << 3;
+	}
+	
+	/**
+	 * Return a copy of this set. Copying the table is much faster
+	 * than serializing it, so a copy can be taken under a lock
+	 * and saved after the lock is released.
+	 */
+	public LongHashSet copy() {
+		LongHashSet copy = new LongHashSet();
+		copy.keys = keys.clone();
+		copy.hasZero = hasZero;
+		copy.size = size;
+		copy.mask = mask;
+		return copy;
+	}
+	
+	public void forEach(LongConsumer action) {
+		if(hasZero) {
+			action.accept(0);
+		}
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != 0) {
+				action.accept(keys[i]);
+			}
+		}
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		mask = capacity - 1;
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		allocate(capacity);
+		for(int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if(key != 0) {
+				int slot = (int) Parser.mix(key) & mask;
+				while(keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+			}
+		}
+	}
+	
+	/**
+	 * The number of keys a table of this capacity holds before it grows.
+	 */
+	private static int maxSize(int capacity) {
+		return capacity - (capacity >> 2);
+	}
+	
+	/**
+	 * The smallest power of two that holds expectedSize at a load factor of 0.75.
+	 */
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while(capacity < MAX_CAPACITY && maxSize(capacity) < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+	
+	/**
+	 * Only the keys are written, not the empty slots of the table.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		if(hasZero) {
+			out.writeLong(0);
+		}
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] != 0) {
+				out.writeLong(keys[i]);
+			}
+		}
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int count = in.readInt();
+		allocate(tableSizeFor(count));
+		for(int i = 0; i < count; i++) {
+			add(in.readLong());
+		}
+	}
+}
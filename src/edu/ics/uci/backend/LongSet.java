@@ -0,0 +1,56 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive longs, used by the Frontier to store the
+ * keys of the files it has seen.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public interface LongSet {
+	
+	/**
+	 * Add a key to this set.
+	 * Returns false if the key was already present.
+	 */
+	public boolean add(long key);
+	
+	public boolean contains(long key);
+	
+	/**
+	 * Remove a key from this set.
+	 * Returns false if the key wasn't present.
+	 */
+	public boolean remove(long key);
+	
+	public long size();
+	
+	/**
+	 * Return the number of bytes the set's table takes up.
+	 */
+	public long getFootprint();
+	
+	/**
+	 * Pass every key in this set to the action.
+	 */
+	public void forEach(LongConsumer action);
+}
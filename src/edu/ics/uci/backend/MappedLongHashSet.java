@@ -0,0 +1,332 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of primitive longs stored off-heap in a memory-mapped file,
+ * using open addressing with linear probing. The heap usage stays
+ * constant no matter how many keys are added. The file is the set's
+ * persisted state, so reopening it resumes instantly and saving it
+ * only needs to flush the mapped pages.
+ * 
+ * When the set grows, it is rehashed into a new file of twice the
+ * capacity, which then replaces the old file.
+ * 
+ * This class is not thread-safe, except that sync() may run while
+ * another thread holding the set's lock adds keys.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class MappedLongHashSet implements LongSet {
+	
+	private static final long MAGIC = 0x6663346A73656E31L;
+	
+	private static final int HEADER_SIZE = 64;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int SIZE_OFFSET = 16;
+	private static final int HAS_ZERO_OFFSET = 24;
+	
+	private static final long DEFAULT_CAPACITY = 1 << 16;
+	
+	/**
+	 * Each mapped segment holds 2^27 slots, which is 1GB.
+	 */
+	private static final int SEGMENT_SHIFT = 27;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+	
+	private final File file;
+	
+	private MappedByteBuffer header;
+	private MappedByteBuffer[] segments;
+	private long capacity;
+	private long mask;
+	private long size;
+	private boolean hasZero;
+	
+	/**
+	 * Open the set stored in this file, or create it if the file doesn't exist.
+	 */
+	public MappedLongHashSet(File file) throws IOException {
+		this.file = file;
+		if(file.exists()) {
+			open();
+		} else {
+			create(file, DEFAULT_CAPACITY);
+		}
+	}
+	
+	public boolean add(long key) {
+		if(key == 0) {
+			if(hasZero) {
+				return false;
+			}
+			hasZero = true;
+			header.put(HAS_ZERO_OFFSET, (byte) 1);
+			setSize(size + 1);
+			return true;
+		}
+		long slot = Parser.mix(key) & mask;
+		long current;
+		while((current = get(slot)) != 0) {
+			if(current == key) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		put(slot, key);
+		setSize(size + 1);
+		if(size > maxSize(capacity)) {
+			grow();
+		}
+		return true;
+	}
+	
+	public boolean contains(long key) {
+		if(key == 0) {
+			return hasZero;
+		}
+		long slot = Parser.mix(key) & mask;
+		long current;
+		while((current = get(slot)) != 0) {
+			if(current == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Slots after the removed key move back to fill the gap, so probing
+	 * never needs tombstones.
+	 */
+	public boolean remove(long key) {
+		if(key == 0) {
+			if(!hasZero) {
+				return false;
+			}
+			hasZero = false;
+			header.put(HAS_ZERO_OFFSET, (byte) 0);
+			setSize(size - 1);
+			return true;
+		}
+		long slot = Parser.mix(key) & mask;
+		long current;
+		while((current = get(slot)) != key) {
+			if(current == 0) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		long gap = slot;
+		slot = (slot + 1) & mask;
+		while((current = get(slot)) != 0) {
+			long home = Parser.mix(current) & mask;
+			/*
+			 * Move the key back unless its home slot lies after the gap,
+			 * in probing order, up to where it sits now.
+			 */
+			if(((slot - home) & mask) >= ((slot - gap) & mask)) {
+				put(gap, current);
+				gap = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		put(gap, 0);
+		setSize(size - 1);
+		return true;
+	}
+	
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * The table is mapped, so it takes up page cache rather than heap.
+	 */
+	public long getFootprint() {
+		return HEADER_SIZE + (capacity << 3);
+	}
+	
+	public void forEach(LongConsumer action) {
+		if(hasZero) {
+			action.accept(0);
+		}
+		for(long slot = 0; slot < capacity; slot++) {
+			long key = get(slot);
+			if(key != 0) {
+				action.accept(key);
+			}
+		}
+	}
+	
+	/**
+	 * Flush the mapped pages to disk. Only taking the current mappings
+	 * needs the set's lock, so adds can go on while the pages are written.
+	 */
+	public void sync() {
+		MappedByteBuffer[] toForce;
+		MappedByteBuffer headerToForce;
+		synchronized(this) {
+			toForce = segments;
+			headerToForce = header;
+		}
+		for(int i = 0; i < toForce.length; i++) {
+			toForce[i].force();
+		}
+		headerToForce.force();
+	}
+	
+	private long get(long slot) {
+		return segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & SEGMENT_MASK) << 3);
+	}
+	
+	private void put(long slot, long key) {
+		segments[(int) (slot >>> SEGMENT_SHIFT)].putLong((int) (slot & SEGMENT_MASK) << 3, key);
+	}
+	
+	private void setSize(long size) {
+		this.size = size;
+		header.putLong(SIZE_OFFSET, size);
+	}
+	
+	/**
+	 * Create an empty table of this capacity in the given file.
+	 */
+	private void create(File target, long capacity) throws IOException {
+		map(target, capacity);
+		header.putLong(MAGIC_OFFSET, MAGIC);
+		header.putLong(CAPACITY_OFFSET, capacity);
+		setSize(0);
+		hasZero = false;
+		header.put(HAS_ZERO_OFFSET, (byte) 0);
+	}
+	
+	/**
+	 * Map the table that is already stored in the file.
+	 */
+	private void open() throws IOException {
+		long fileCapacity;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if(raf.length() < HEADER_SIZE || raf.readLong() != MAGIC) {
+				throw new IOException("Not a seen files map: " + file.getPath());
+			}
+			fileCapacity = raf.readLong();
+			if(raf.length() != HEADER_SIZE + (fileCapacity << 3)) {
+				throw new IOException("Seen files map is truncated: " + file.getPath());
+			}
+		} finally {
+			raf.close();
+		}
+		map(file, fileCapacity);
+		size = header.getLong(SIZE_OFFSET);
+		hasZero = header.get(HAS_ZERO_OFFSET) != 0;
+	}
+	
+	/**
+	 * Map the header and every segment of the file, sizing the file to fit.
+	 * The channel can be closed once mapped, the mappings stay valid.
+	 */
+	private void map(File target, long capacity) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(target, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = HEADER_SIZE + (capacity << 3);
+			if(raf.length() != length) {
+				raf.setLength(length);
+			}
+			header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			int segmentCount = (int) ((capacity + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+			segments = new MappedByteBuffer[segmentCount];
+			for(int i = 0; i < segmentCount; i++) {
+				long first = (long) i << SEGMENT_SHIFT;
+				long slots = Math.min(capacity - first, 1L << SEGMENT_SHIFT);
+				segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (first << 3), slots << 3);
+			}
+		} finally {
+			raf.close();
+		}
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+	}
+	
+	/**
+	 * Rehash every key into a file of twice the capacity,
+	 * then replace the old file with it. A temporary file left behind
+	 * by an earlier crash is deleted first, since mapping it as is
+	 * would keep its stale keys. Every mapping is dropped before the
+	 * move and the new file mapped again after it, since some platforms
+	 * won't replace a file that is still mapped.
+	 */
+	private void grow() {
+		MappedByteBuffer[] oldSegments = segments;
+		long oldCapacity = capacity;
+		long oldSize = size;
+		boolean oldHasZero = hasZero;
+		File grown = new File(file.getPath() + ".tmp");
+		try {
+			Files.deleteIfExists(grown.toPath());
+			create(grown, oldCapacity << 1);
+			for(int i = 0; i < oldSegments.length; i++) {
+				MappedByteBuffer segment = oldSegments[i];
+				int slots = segment.capacity() >> 3;
+				for(int j = 0; j < slots; j++) {
+					long key = segment.getLong(j << 3);
+					if(key != 0) {
+						long slot = Parser.mix(key) & mask;
+						while(get(slot) != 0) {
+							slot = (slot + 1) & mask;
+						}
+						put(slot, key);
+					}
+				}
+			}
+			setSize(oldSize);
+			hasZero = oldHasZero;
+			header.put(HAS_ZERO_OFFSET, (byte) (oldHasZero ? 1 : 0));
+			for(int i = 0; i < segments.length; i++) {
+				segments[i].force();
+			}
+			header.force();
+			long grownCapacity = capacity;
+			oldSegments = null;
+			segments = null;
+			header = null;
+			Files.move(grown.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			map(file, grownCapacity);
+		} catch (IOException e) {
+			throw new IllegalStateException("Couldn't grow the seen files map: " + file.getPath(), e);
+		}
+	}
+	
+	private static long maxSize(long capacity) {
+		return capacity - (capacity >> 2);
+	}
+}
@@ -54,4 +54,29 @@ public class Parser {
 		}
 		return extension.toLowerCase();
 	}
+	
+	/**
+	 * Return a 64-bit fingerprint of a string, such as an absolute path.
+	 * Uses FNV-1a followed by the MurmurHash3 finalizer.
+	 */
+	public static long getFingerprint(String s) {
+		long h = 0xCBF29CE484222325L;
+		for(int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return mix(h);
+	}
+	
+	/**
+	 * The MurmurHash3 64-bit finalizer. Every input maps to a distinct output.
+	 */
+	public static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
 }
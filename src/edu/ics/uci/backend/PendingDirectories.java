@@ -0,0 +1,60 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.Serializable;
+
+/**
+ * The saved state of the Frontier's work queue: the directories not yet
+ * completed, in the order they will be crawled, and the fingerprints of
+ * every directory ever scheduled. A resumed crawl continues from these
+ * directories and never schedules a directory it already walked.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class PendingDirectories implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final String[] paths;
+	private final int[] depths;
+	private final LongHashSet scheduledDirs;
+	
+	public PendingDirectories(String[] paths, int[] depths, LongHashSet scheduledDirs) {
+		this.paths = paths;
+		this.depths = depths;
+		this.scheduledDirs = scheduledDirs;
+	}
+	
+	public int size() {
+		return paths.length;
+	}
+	
+	public String getPath(int i) {
+		return paths[i];
+	}
+	
+	public int getDepth(int i) {
+		return depths[i];
+	}
+	
+	public LongHashSet getScheduledDirs() {
+		return scheduledDirs;
+	}
+}
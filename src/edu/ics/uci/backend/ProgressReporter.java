@@ -0,0 +1,211 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Logs the crawl's progress on a background thread: files, directories
+ * and bytes per second over the last minute and the last ten minutes,
+ * and, when the number of files to expect is known, how far along the
+ * crawl is and how long it has left at the ten minute rate.
+ * 
+ * The reporter only samples the counters and metrics, which crawler
+ * threads update without locking, so it never holds up the crawl.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class ProgressReporter implements Runnable {
+	
+	private static final Logger logger = Logger.getLogger(ProgressReporter.class.getName());
+	
+	private static final long SHORT_WINDOW = 60 * 1000;
+	private static final long LONG_WINDOW = 10 * 60 * 1000;
+	
+	private static final int ESTIMATE_PROBES = 64;
+	
+	private final Frontier frontier;
+	
+	/**
+	 * How often to report, in milliseconds.
+	 */
+	private final long interval;
+	
+	private final boolean estimateFileCount;
+	
+	/**
+	 * The files seen before this run of the crawl, if it was resumed.
+	 */
+	private long baseFileCount;
+	
+	/**
+	 * Samples of the time and the files, directories and bytes seen,
+	 * oldest first, reaching back as far as the long window.
+	 */
+	private final ArrayDeque<long[]> samples = new ArrayDeque<long[]>();
+	
+	private volatile boolean running = false;
+	private Thread thread;
+	
+	private volatile double filesPerSecond = 0;
+	private volatile double dirsPerSecond = 0;
+	private volatile double bytesPerSecond = 0;
+	private volatile long remainingTime = -1;
+	
+	public ProgressReporter(Frontier frontier, long interval, boolean estimateFileCount) {
+		this.frontier = frontier;
+		this.interval = interval;
+		this.estimateFileCount = estimateFileCount;
+	}
+	
+	public void start() {
+		baseFileCount = frontier.getSeenFileCount();
+		sample(System.currentTimeMillis());
+		running = true;
+		thread = new Thread(this, "Progress reporter");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stop the reporter thread.
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+		synchronized(this) {
+			notify();
+		}
+		thread.join();
+	}
+	
+	public void run() {
+		if(estimateFileCount && frontier.getExpectedFileCount() == 0) {
+			long estimate = new FileCountEstimator(new Random()).estimate(
+					new File(frontier.getConfig().getPathToDirectory()), ESTIMATE_PROBES);
+			frontier.setExpectedFileCount(estimate);
+			logger.info("Estimated " + estimate + " files to crawl");
+		}
+		while(running) {
+			try {
+				synchronized(this) {
+					wait(interval);
+				}
+			} catch (InterruptedException e) {
+				break;
+			}
+			if(!running) {
+				break;
+			}
+			report();
+		}
+	}
+	
+	private void report() {
+		long now = System.currentTimeMillis();
+		long[] latest = sample(now);
+		long[] recent = oldestWithin(now - SHORT_WINDOW);
+		long[] oldest = oldestWithin(now - LONG_WINDOW);
+		filesPerSecond = rate(oldest, latest, 1);
+		dirsPerSecond = rate(oldest, latest, 2);
+		bytesPerSecond = rate(oldest, latest, 3);
+		long files = latest[1];
+		long expected = frontier.getExpectedFileCount();
+		if(expected > files && filesPerSecond > 0) {
+			remainingTime = (long) ((expected - files) / filesPerSecond * 1000);
+		} else {
+			remainingTime = -1;
+		}
+		StringBuilder line = new StringBuilder();
+		line.append(String.format("Progress: %d files", files));
+		if(expected > 0) {
+			line.append(String.format(" (%.1f%% of %d)", Math.min(100.0, 100.0 * files / expected), expected));
+		}
+		line.append(String.format(", %d dirs, %.1f MB", latest[2], latest[3] / 1048576.0));
+		line.append(String.format(" | 1m: %.1f files/s, %.1f dirs/s, %.1f MB/s",
+				rate(recent, latest, 1), rate(recent, latest, 2), rate(recent, latest, 3) / 1048576.0));
+		line.append(String.format(" | 10m: %.1f files/s, %.1f dirs/s, %.1f MB/s",
+				filesPerSecond, dirsPerSecond, bytesPerSecond / 1048576.0));
+		if(remainingTime >= 0) {
+			line.append(" | ETA ").append(formatDuration(remainingTime));
+		}
+		logger.info(line.toString());
+	}
+	
+	/**
+	 * Take a sample and drop those older than the long window.
+	 */
+	private long[] sample(long now) {
+		CrawlMetrics metrics = frontier.getMetrics();
+		long[] sample = new long[] {now, baseFileCount + metrics.getFilesSeen(),
+				frontier.getSeenDirCount(), metrics.getBytesSeen()};
+		samples.addLast(sample);
+		while(samples.getFirst()[0] < now - LONG_WINDOW) {
+			samples.removeFirst();
+		}
+		return sample;
+	}
+	
+	/**
+	 * Return the oldest sample taken at or after since, or the latest if none was.
+	 */
+	private long[] oldestWithin(long since) {
+		for(long[] sample : samples) {
+			if(sample[0] >= since) {
+				return sample;
+			}
+		}
+		return samples.getLast();
+	}
+	
+	private static double rate(long[] from, long[] to, int field) {
+		long elapsed = to[0] - from[0];
+		return elapsed > 0 ? (to[field] - from[field]) * 1000.0 / elapsed : 0;
+	}
+	
+	private static String formatDuration(long millis) {
+		long seconds = millis / 1000;
+		return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+	}
+	
+	/**
+	 * Return the files seen per second over the last ten minutes.
+	 */
+	public double getFilesPerSecond() {
+		return filesPerSecond;
+	}
+	
+	public double getDirsPerSecond() {
+		return dirsPerSecond;
+	}
+	
+	public double getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+	
+	/**
+	 * Return the estimated time left in milliseconds, or -1 if unknown.
+	 */
+	public long getRemainingTime() {
+		return remainingTime;
+	}
+}
@@ -14,10 +14,16 @@
 
 package edu.ics.uci.backend;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.log4j.Logger;
 
 /**
  * This project is based on the open-source project "Crawler4j" 
@@ -28,12 +34,34 @@ import java.io.InputStream;
  */
 public abstract class Properties {
 	
+	private static final Logger logger = Logger.getLogger(Properties.class.getName());
+	
 	protected File file;
 	protected int depth;
 	
+	/**
+	 * The file's attributes, read once and cached.
+	 */
+	protected BasicFileAttributes attributes;
+	
+	/**
+	 * Told how long stats, opens and reads take, or null.
+	 */
+	protected AdaptiveThrottle throttle;
+	
 	protected Properties(File file, int depth) {
+		this(file, depth, null);
+	}
+	
+	protected Properties(File file, int depth, BasicFileAttributes attributes) {
+		this(file, depth, attributes, null);
+	}
+	
+	protected Properties(File file, int depth, BasicFileAttributes attributes, AdaptiveThrottle throttle) {
 		this.file = file;
 		this.depth = depth;
+		this.attributes = attributes;
+		this.throttle = throttle;
 	}
 
 	public File getFile() {
@@ -60,6 +88,40 @@ public abstract class Properties {
 		return depth;
 	}
 	
+	/**
+	 * Return the file's attributes, reading them with a single stat
+	 * the first time if the crawler didn't already.
+	 */
+	public BasicFileAttributes getAttributes() throws IOException {
+		if(attributes == null) {
+			long start = System.nanoTime();
+			attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			record(start);
+		}
+		return attributes;
+	}
+	
+	/**
+	 * Return the cached attributes, or null if they haven't been read.
+	 */
+	public BasicFileAttributes getCachedAttributes() {
+		return attributes;
+	}
+	
+	/**
+	 * Return the size of the file in bytes.
+	 */
+	public long getSize() {
+		return attributes != null ? attributes.size() : file.length();
+	}
+	
+	/**
+	 * Return the time the file was last modified, in milliseconds since the epoch.
+	 */
+	public long getLastModified() {
+		return attributes != null ? attributes.lastModifiedTime().toMillis() : file.lastModified();
+	}
+	
 	public boolean isHidden() {
 		return file.isHidden();
 	}
@@ -72,13 +134,64 @@ public abstract class Properties {
 		file.deleteOnExit();
 	}
 	
+	/**
+	 * Return a buffered stream of the file's contents,
+	 * or null if the file can't be opened.
+	 */
 	public InputStream getInputStream() {
-		FileInputStream fis = null;
 		try {
-			fis = new FileInputStream(file);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			return openInputStream();
+		} catch (IOException e) {
+			logger.error("Caught IOException opening: " + file.getPath());
+			return null;
+		}
+	}
+	
+	/**
+	 * Return a buffered stream of the file's contents. The caller closes it.
+	 */
+	public InputStream openInputStream() throws IOException {
+		long start = System.nanoTime();
+		InputStream in = new FileInputStream(file);
+		record(start);
+		if(throttle != null) {
+			in = new TimedInputStream(in);
+		}
+		return new BufferedInputStream(in, BufferPool.CHUNK_SIZE);
+	}
+	
+	/**
+	 * Tell the throttle, if any, how long an operation started at start took.
+	 */
+	protected void record(long start) {
+		if(throttle != null) {
+			throttle.record(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Tells the throttle how long each read takes.
+	 */
+	private class TimedInputStream extends FilterInputStream {
+		
+		private TimedInputStream(InputStream in) {
+			super(in);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			long start = System.nanoTime();
+			int b = super.read();
+			record(start);
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			int read = super.read(b, off, len);
+			record(start);
+			return read;
 		}
-		return fis;
 	}
 }
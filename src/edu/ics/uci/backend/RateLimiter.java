@@ -0,0 +1,159 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that limits how many permits, such as files or bytes,
+ * are taken per second. It can be shared by any number of threads, and
+ * its rate can be changed while they use it. Threads over the budget
+ * wait rather than spin, and a change of rate wakes them to wait
+ * for the time left at the new rate instead.
+ * 
+ * Permits are reserved as soon as they are asked for, so a request for
+ * more permits than the bucket holds is let through once the time it
+ * costs at the current rate has passed.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class RateLimiter {
+	
+	/**
+	 * Permits per second, or 0 for no limit.
+	 */
+	private double rate;
+	
+	/**
+	 * The most permits the bucket holds, one second's worth unless maxCapacity is set.
+	 */
+	private double capacity;
+	
+	/**
+	 * If greater than 0, caps the capacity, which limits the burst let through after an idle spell.
+	 */
+	private final double maxCapacity;
+	
+	/**
+	 * The permits in the bucket. Negative while reserved permits are owed.
+	 */
+	private double available;
+	
+	private long lastRefill;
+	
+	private long waitedNanos = 0;
+	
+	public RateLimiter(double rate) {
+		this(rate, 0);
+	}
+	
+	/**
+	 * Create a limiter whose bucket holds no more than maxCapacity permits.
+	 * A capacity of 1 spaces every permit out by the full interval.
+	 */
+	public RateLimiter(double rate, double maxCapacity) {
+		this.maxCapacity = maxCapacity;
+		lastRefill = System.nanoTime();
+		applyRate(rate);
+	}
+	
+	/**
+	 * Change the number of permits allowed per second, or 0 for no limit.
+	 */
+	public synchronized void setRate(double rate) {
+		applyRate(rate);
+		notifyAll();
+	}
+	
+	private void applyRate(double rate) {
+		if(rate < 0) {
+			throw new IllegalArgumentException("Rate cannot be less than 0");
+		}
+		refill();
+		this.rate = rate;
+		capacity = Math.max(1, rate);
+		if(maxCapacity > 0) {
+			capacity = Math.min(capacity, maxCapacity);
+		}
+		available = Math.min(available, capacity);
+	}
+	
+	public synchronized double getRate() {
+		return rate;
+	}
+	
+	/**
+	 * Take a permit, sleeping until it is available.
+	 */
+	public void acquire() {
+		acquire(1);
+	}
+	
+	/**
+	 * Take this many permits, waiting until they are available.
+	 * Returns early, with the interrupt flag set, if the thread is interrupted.
+	 */
+	public synchronized void acquire(long permits) {
+		if(rate == 0) {
+			return;
+		}
+		refill();
+		available -= permits;
+		if(available >= 0) {
+			return;
+		}
+		long start = System.nanoTime();
+		long deadline = start + (long) (-available / rate * TimeUnit.SECONDS.toNanos(1));
+		try {
+			long remaining;
+			while((remaining = deadline - System.nanoTime()) > 0) {
+				double waitRate = rate;
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				if(rate != waitRate) {
+					if(rate == 0) {
+						break;
+					}
+					/*
+					 * The permits still owed are paid off at the new rate.
+					 */
+					long now = System.nanoTime();
+					deadline = now + (long) ((deadline - now) * waitRate / rate);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		waitedNanos += System.nanoTime() - start;
+	}
+	
+	/**
+	 * Return how long threads waited in total, in milliseconds.
+	 */
+	public synchronized long getWaitedTime() {
+		return TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+	}
+	
+	private void refill() {
+		long now = System.nanoTime();
+		if(rate > 0) {
+			available = Math.min(capacity, available + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+		}
+		lastRefill = now;
+	}
+}
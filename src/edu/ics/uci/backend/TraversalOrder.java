@@ -0,0 +1,44 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+/**
+ * The order in which directories are crawled.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public enum TraversalOrder {
+	
+	/**
+	 * Recurse into each sub directory as it is found. With multiple
+	 * crawlers, directories are taken from the work queue breadth-first.
+	 */
+	RECURSIVE,
+	
+	/**
+	 * Take directories from the Frontier's work queue, newest first.
+	 * Only the work queue grows with the depth of the tree, not the call stack.
+	 */
+	DEPTH_FIRST,
+	
+	/**
+	 * Take directories from the Frontier's work queue, oldest first.
+	 */
+	BREADTH_FIRST
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A streaming implementation of the 64-bit xxHash with a seed of 0.
+ * Input can be given in pieces of any size, the hash is the same
+ * as if it had been given all at once.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class XxHash64 implements HashAlgorithm.Hasher {
+	
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	
+	private static final int STRIPE_SIZE = 32;
+	
+	private long v1 = PRIME1 + PRIME2;
+	private long v2 = PRIME2;
+	private long v3 = 0;
+	private long v4 = -PRIME1;
+	private long totalLength = 0;
+	
+	/**
+	 * Input that doesn't yet fill a stripe.
+	 */
+	private final ByteBuffer pending = ByteBuffer.allocate(STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	
+	public void update(ByteBuffer input) {
+		ByteBuffer in = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+		input.position(input.limit());
+		totalLength += in.remaining();
+		if(pending.position() > 0) {
+			while(pending.hasRemaining() && in.hasRemaining()) {
+				pending.put(in.get());
+			}
+			if(pending.hasRemaining()) {
+				return;
+			}
+			pending.flip();
+			stripe(pending);
+			pending.clear();
+		}
+		while(in.remaining() >= STRIPE_SIZE) {
+			stripe(in);
+		}
+		pending.put(in);
+	}
+	
+	public byte[] digest() {
+		long hash = getValue();
+		byte[] bytes = new byte[8];
+		for(int i = 7; i >= 0; i--) {
+			bytes[i] = (byte) hash;
+			hash >>>= 8;
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Return the hash of all the input so far.
+	 */
+	public long getValue() {
+		long hash;
+		if(totalLength >= STRIPE_SIZE) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = merge(hash, v1);
+			hash = merge(hash, v2);
+			hash = merge(hash, v3);
+			hash = merge(hash, v4);
+		} else {
+			hash = PRIME5;
+		}
+		hash += totalLength;
+		ByteBuffer tail = pending.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		tail.flip();
+		while(tail.remaining() >= 8) {
+			hash ^= round(0, tail.getLong());
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+		if(tail.remaining() >= 4) {
+			hash ^= (tail.getInt() & 0xFFFFFFFFL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+		}
+		while(tail.hasRemaining()) {
+			hash ^= (tail.get() & 0xFF) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+		}
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+	
+	private void stripe(ByteBuffer in) {
+		v1 = round(v1, in.getLong());
+		v2 = round(v2, in.getLong());
+		v3 = round(v3, in.getLong());
+		v4 = round(v4, in.getLong());
+	}
+	
+	private static long round(long acc, long input) {
+		acc += input * PRIME2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME1;
+	}
+	
+	private static long merge(long hash, long acc) {
+		hash ^= round(0, acc);
+		return hash * PRIME1 + PRIME4;
+	}
+}
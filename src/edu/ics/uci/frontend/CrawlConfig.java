@@ -16,7 +16,10 @@ package edu.ics.uci.frontend;
 
 import java.io.Serializable;
 
+import edu.ics.uci.backend.FileIdentity;
+import edu.ics.uci.backend.HashAlgorithm;
 import edu.ics.uci.backend.Parser;
+import edu.ics.uci.backend.TraversalOrder;
 
 /**
  * This project is based on the open-source project "Crawler4j" 
@@ -51,6 +54,20 @@ public class CrawlConfig implements Serializable {
 	 */
 	private boolean resumableCrawling = false;
 	
+	/**
+	 * If greater than 0, and crawling is resumable, crawl data is saved
+	 * in the background every time this many more files have been seen.
+	 * Unless the seen files are memory-mapped, it is saved at least every
+	 * 1048576 files, which bounds the files buffered for the journal.
+	 */
+	private long checkpointFileInterval = 0;
+	
+	/**
+	 * If greater than 0, and crawling is resumable, crawl data is saved
+	 * in the background this often (in milliseconds).
+	 */
+	private long checkpointTimeInterval = 0;
+	
 	/**
 	 * If enabled, crawl hidden files.
 	 */
@@ -61,11 +78,193 @@ public class CrawlConfig implements Serializable {
 	 */
 	private boolean printStats = false;
 	
+	/**
+	 * How files are identified when deciding if they were already seen.
+	 */
+	private FileIdentity fileIdentity = FileIdentity.PATH;
+	
+	/**
+	 * If enabled, directories are listed with a DirectoryStream and the
+	 * attributes of each entry are read with a single stat, then cached
+	 * in its FileProperties or DirProperties.
+	 */
+	private boolean nioTraversal = false;
+	
+	/**
+	 * If enabled, the seen files are kept off-heap in a memory-mapped
+	 * file in the crawl storage folder instead of on the heap.
+	 */
+	private boolean memoryMappedSeenFiles = false;
+	
+	/**
+	 * The number of files this crawl is expected to see. If greater than 0,
+	 * a Bloom filter sized for this many files answers most checks for
+	 * new files without looking them up in the seen files. Only sizes the
+	 * filter; progress is measured against progressFileCount.
+	 */
+	private long expectedFileCount = 0;
+	
+	/**
+	 * If greater than 0, the number of files the crawl's progress and
+	 * estimated remaining time are measured against.
+	 */
+	private long progressFileCount = 0;
+	
+	/**
+	 * If greater than 0, how often (in milliseconds) the crawl's progress,
+	 * throughput and estimated remaining time are logged.
+	 */
+	private long progressInterval = 0;
+	
+	/**
+	 * If true, and neither progressFileCount nor the last incremental crawl
+	 * tell how many files to expect, progress is measured against an
+	 * estimate taken from a few random walks down the tree as the crawl starts.
+	 */
+	private boolean estimateFileCount = false;
+	
+	/**
+	 * If true, the controller registers a CrawlMonitor MBean while crawling.
+	 */
+	private boolean jmxEnabled = false;
+	
+	/**
+	 * If greater than 0, the port on localhost where the controller serves
+	 * Prometheus metrics at /metrics, and takes POSTs to /pause, /resume
+	 * and /shutdown, while crawling.
+	 */
+	private int metricsPort = 0;
+	
+	/**
+	 * If set, a POST to the metrics server must carry it in an
+	 * "Authorization: Bearer" header. If not, it must carry an
+	 * X-Filecrawler-Request header, which a web page can't send
+	 * to another origin.
+	 */
+	private String metricsToken = null;
+	
 	/**
 	 * How long to wait (in milliseconds) before processing a file.
+	 * Each crawler waits on its own, so this limits each crawler
+	 * to 1000 / delay files per second.
 	 */
 	private long delay = 100;
 	
+	/**
+	 * If greater than 0, the most files all crawlers together process
+	 * per second. Can be changed during the crawl through the CrawlController.
+	 */
+	private double maxFilesPerSecond = 0;
+	
+	/**
+	 * If greater than 0, the most bytes of files all crawlers together
+	 * process per second. Can be changed during the crawl through the CrawlController.
+	 */
+	private long maxBytesPerSecond = 0;
+	
+	/**
+	 * If greater than 0, the average stat, open and read latency (in microseconds)
+	 * the crawl holds by adapting how many files all crawlers process per second.
+	 * Crawling slows down when the storage is busy and speeds back up when it is idle.
+	 */
+	private long targetLatency = 0;
+	
+	/**
+	 * If set, each file's contents are hashed with this algorithm before
+	 * process() is called, and the digest is in FileProperties.getContentHash().
+	 * process() is then called on the hashing threads, unless maxConcurrentProcessing
+	 * is set.
+	 */
+	private HashAlgorithm contentHashAlgorithm = null;
+	
+	/**
+	 * The number of threads hashing file contents,
+	 * or 0 for one per available processor.
+	 */
+	private int hashingThreads = 0;
+	
+	/**
+	 * If true, once the crawl is done the processed files with the same
+	 * contents are passed to FileCrawler.onDuplicates(). Only files that
+	 * share their size are read, and only their first and last blocks
+	 * unless those match too. For resumable crawls, only the files
+	 * processed since the crawl was resumed are compared. Incremental
+	 * crawls compare the unchanged files they skip too, but not those in
+	 * directories left unlisted by trustDirectoryTimes.
+	 */
+	private boolean duplicateDetection = false;
+	
+	/**
+	 * Files smaller than this many bytes aren't checked for duplicates.
+	 */
+	private long minDuplicateSize = 1;
+	
+	/**
+	 * The number of crawler threads to run. If greater than 1,
+	 * crawlers pull directories from a shared work queue in the Frontier.
+	 */
+	private int numberOfCrawlers = 1;
+	
+	/**
+	 * If enabled, the size and last modified time of every processed file
+	 * are kept in the crawl storage folder, and the next crawl only
+	 * processes files that are new or modified since.
+	 */
+	private boolean incrementalCrawling = false;
+	
+	/**
+	 * If enabled, an incremental crawl doesn't list a directory whose last
+	 * modified time is unchanged, and treats its files as unchanged.
+	 * A directory's time changes when entries are added, removed or renamed,
+	 * but not when a file in it is modified in place, so only enable this
+	 * if files are replaced rather than rewritten.
+	 */
+	private boolean trustDirectoryTimes = false;
+	
+	/**
+	 * If enabled, the crawl doesn't finish after the first walk. The visited
+	 * directories are watched, and created and modified files are processed
+	 * as they change until the controller is shut down.
+	 */
+	private boolean continuousCrawling = false;
+	
+	/**
+	 * How long a continuous crawl waits for more changes before handling
+	 * those collected, in milliseconds.
+	 */
+	private long watchEventDelay = 200;
+	
+	/**
+	 * The order in which directories are crawled. Anything but RECURSIVE
+	 * crawls from a work queue on the heap instead of the call stack,
+	 * so very deep trees can't overflow the stack. A resumable crawl
+	 * with a work queue saves it and resumes from the directories left
+	 * in it, while a recursive one walks the tree again, skipping the
+	 * files it already saw.
+	 */
+	private TraversalOrder traversalOrder = TraversalOrder.RECURSIVE;
+	
+	/**
+	 * If greater than 0, the most directories the work queue holds at once.
+	 * A crawler that finds a directory while it is full crawls that directory
+	 * itself rather than queuing it, so no directory is skipped.
+	 */
+	private int maxPendingDirectories = 0;
+	
+	/**
+	 * The number of ForkJoinPool workers to traverse with. If greater than 0,
+	 * every directory becomes a task that idle workers can steal, and the
+	 * crawler's callbacks are called concurrently on a single crawler instance.
+	 */
+	private int forkJoinParallelism = 0;
+	
+	/**
+	 * If greater than 0, every call to process() and visit() is dispatched
+	 * to its own virtual thread, with at most this many running at once.
+	 * The crawler's callbacks must then be thread-safe.
+	 */
+	private int maxConcurrentProcessing = 0;
+	
 	/**
 	 * Validate these configurations
 	 */
@@ -81,9 +280,78 @@ public class CrawlConfig implements Serializable {
 			}
 			topDirectory = Parser.getActualTopDirectory(pathToDirectory);
 		}
+		if(checkpointFileInterval < 0) {
+			throw new Exception("Checkpoint file interval cannot be less than 0");
+		}
+		if(checkpointTimeInterval < 0) {
+			throw new Exception("Checkpoint time interval cannot be less than 0");
+		}
+		if(fileIdentity == null) {
+			throw new Exception("File identity is not set in CrawlConfig");
+		}
+		if(metricsPort < 0 || metricsPort > 65535) {
+			throw new Exception("Metrics port must be between 0 and 65535");
+		}
+		if(metricsToken != null && metricsToken.isEmpty()) {
+			throw new Exception("Metrics token cannot be empty");
+		}
+		if(progressInterval < 0) {
+			throw new Exception("Progress interval cannot be less than 0");
+		}
+		if(expectedFileCount < 0) {
+			throw new Exception("Expected file count cannot be less than 0");
+		}
+		if(progressFileCount < 0) {
+			throw new Exception("Progress file count cannot be less than 0");
+		}
 		if(delay < 0) {
 			throw new Exception("Delay cannot be less than 0");
 		}
+		if(numberOfCrawlers < 1) {
+			throw new Exception("Number of crawlers cannot be less than 1");
+		}
+		if(incrementalCrawling && resumableCrawling) {
+			throw new Exception("Incremental crawling cannot be combined with resumable crawling");
+		}
+		if(trustDirectoryTimes && !incrementalCrawling) {
+			throw new Exception("Trusting directory times requires incremental crawling");
+		}
+		if(maxFilesPerSecond < 0) {
+			throw new Exception("Max files per second cannot be less than 0");
+		}
+		if(maxBytesPerSecond < 0) {
+			throw new Exception("Max bytes per second cannot be less than 0");
+		}
+		if(hashingThreads < 0) {
+			throw new Exception("Hashing threads cannot be less than 0");
+		}
+		if(minDuplicateSize < 0) {
+			throw new Exception("Min duplicate size cannot be less than 0");
+		}
+		if(targetLatency < 0) {
+			throw new Exception("Target latency cannot be less than 0");
+		}
+		if(watchEventDelay < 0) {
+			throw new Exception("Watch event delay cannot be less than 0");
+		}
+		if(traversalOrder == null) {
+			throw new Exception("Traversal order is not set in CrawlConfig");
+		}
+		if(maxPendingDirectories < 0) {
+			throw new Exception("Max pending directories cannot be less than 0");
+		}
+		if(forkJoinParallelism > 0 && traversalOrder != TraversalOrder.RECURSIVE) {
+			throw new Exception("ForkJoin traversal cannot be combined with a " + traversalOrder + " traversal order");
+		}
+		if(forkJoinParallelism < 0) {
+			throw new Exception("ForkJoin parallelism cannot be less than 0");
+		}
+		if(forkJoinParallelism > 0 && numberOfCrawlers > 1) {
+			throw new Exception("ForkJoin traversal cannot be combined with multiple crawlers");
+		}
+		if(maxConcurrentProcessing < 0) {
+			throw new Exception("Max concurrent processing cannot be less than 0");
+		}
 	}
 	
 	public void setCrawlStorageFolder(String crawlStorageFolder) {
@@ -98,6 +366,14 @@ public class CrawlConfig implements Serializable {
 		this.resumableCrawling = resumableCrawling;
 	}
 	
+	public void setCheckpointFileInterval(long checkpointFileInterval) {
+		this.checkpointFileInterval = checkpointFileInterval;
+	}
+	
+	public void setCheckpointTimeInterval(long checkpointTimeInterval) {
+		this.checkpointTimeInterval = checkpointTimeInterval;
+	}
+	
 	public void setCrawlHiddenFiles(boolean crawlHiddenFiles) {
 		this.crawlHiddenFiles = crawlHiddenFiles;
 	}
@@ -106,10 +382,114 @@ public class CrawlConfig implements Serializable {
 		this.printStats = printStats;
 	}
 	
+	public void setFileIdentity(FileIdentity fileIdentity) {
+		this.fileIdentity = fileIdentity;
+	}
+	
+	public void setNioTraversal(boolean nioTraversal) {
+		this.nioTraversal = nioTraversal;
+	}
+	
+	public void setMemoryMappedSeenFiles(boolean memoryMappedSeenFiles) {
+		this.memoryMappedSeenFiles = memoryMappedSeenFiles;
+	}
+	
+	public void setMaxFilesPerSecond(double maxFilesPerSecond) {
+		this.maxFilesPerSecond = maxFilesPerSecond;
+	}
+	
+	public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+		this.maxBytesPerSecond = maxBytesPerSecond;
+	}
+	
+	public void setContentHashAlgorithm(HashAlgorithm contentHashAlgorithm) {
+		this.contentHashAlgorithm = contentHashAlgorithm;
+	}
+	
+	public void setHashingThreads(int hashingThreads) {
+		this.hashingThreads = hashingThreads;
+	}
+	
+	public void setDuplicateDetection(boolean duplicateDetection) {
+		this.duplicateDetection = duplicateDetection;
+	}
+	
+	public void setMinDuplicateSize(long minDuplicateSize) {
+		this.minDuplicateSize = minDuplicateSize;
+	}
+	
+	public void setTargetLatency(long targetLatency) {
+		this.targetLatency = targetLatency;
+	}
+	
+	public void setExpectedFileCount(long expectedFileCount) {
+		this.expectedFileCount = expectedFileCount;
+	}
+	
+	public void setProgressFileCount(long progressFileCount) {
+		this.progressFileCount = progressFileCount;
+	}
+	
+	public void setProgressInterval(long progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+	
+	public void setEstimateFileCount(boolean estimateFileCount) {
+		this.estimateFileCount = estimateFileCount;
+	}
+	
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+	
+	public void setMetricsPort(int metricsPort) {
+		this.metricsPort = metricsPort;
+	}
+	
+	public void setMetricsToken(String metricsToken) {
+		this.metricsToken = metricsToken;
+	}
+	
 	public void setDelay(long delay) {
 		this.delay = delay;
 	}
 	
+	public void setNumberOfCrawlers(int numberOfCrawlers) {
+		this.numberOfCrawlers = numberOfCrawlers;
+	}
+	
+	public void setIncrementalCrawling(boolean incrementalCrawling) {
+		this.incrementalCrawling = incrementalCrawling;
+	}
+	
+	public void setTrustDirectoryTimes(boolean trustDirectoryTimes) {
+		this.trustDirectoryTimes = trustDirectoryTimes;
+	}
+	
+	public void setContinuousCrawling(boolean continuousCrawling) {
+		this.continuousCrawling = continuousCrawling;
+	}
+	
+	public void setWatchEventDelay(long watchEventDelay) {
+		this.watchEventDelay = watchEventDelay;
+	}
+	
+	public void setTraversalOrder(TraversalOrder traversalOrder) {
+		this.traversalOrder = traversalOrder;
+	}
+	
+	public void setMaxPendingDirectories(int maxPendingDirectories) {
+		this.maxPendingDirectories = maxPendingDirectories;
+	}
+	
+	public void setForkJoinParallelism(int forkJoinParallelism) {
+		this.forkJoinParallelism = forkJoinParallelism;
+	}
+	
+	public void setMaxConcurrentProcessing(int maxConcurrentProcessing) {
+		this.maxConcurrentProcessing = maxConcurrentProcessing;
+	}
+	
 	public String getCrawlStorageFolder() {
 		return crawlStorageFolder;
 	}
@@ -126,6 +506,14 @@ public class CrawlConfig implements Serializable {
 		return resumableCrawling;
 	}
 	
+	public long getCheckpointFileInterval() {
+		return checkpointFileInterval;
+	}
+	
+	public long getCheckpointTimeInterval() {
+		return checkpointTimeInterval;
+	}
+	
 	public boolean isCrawlHiddenFiles() {
 		return crawlHiddenFiles;
 	}
@@ -134,7 +522,111 @@ public class CrawlConfig implements Serializable {
 		return printStats;
 	}
 	
+	public FileIdentity getFileIdentity() {
+		return fileIdentity;
+	}
+	
+	public boolean isNioTraversal() {
+		return nioTraversal;
+	}
+	
+	public boolean isMemoryMappedSeenFiles() {
+		return memoryMappedSeenFiles;
+	}
+	
+	public double getMaxFilesPerSecond() {
+		return maxFilesPerSecond;
+	}
+	
+	public long getMaxBytesPerSecond() {
+		return maxBytesPerSecond;
+	}
+	
+	public HashAlgorithm getContentHashAlgorithm() {
+		return contentHashAlgorithm;
+	}
+	
+	public int getHashingThreads() {
+		return hashingThreads;
+	}
+	
+	public boolean isDuplicateDetection() {
+		return duplicateDetection;
+	}
+	
+	public long getMinDuplicateSize() {
+		return minDuplicateSize;
+	}
+	
+	public long getTargetLatency() {
+		return targetLatency;
+	}
+	
+	public long getExpectedFileCount() {
+		return expectedFileCount;
+	}
+	
+	public long getProgressFileCount() {
+		return progressFileCount;
+	}
+	
+	public long getProgressInterval() {
+		return progressInterval;
+	}
+	
+	public boolean isEstimateFileCount() {
+		return estimateFileCount;
+	}
+	
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+	
+	public int getMetricsPort() {
+		return metricsPort;
+	}
+	
+	public String getMetricsToken() {
+		return metricsToken;
+	}
+	
 	public long getDelay() {
 		return delay;
 	}
+	
+	public int getNumberOfCrawlers() {
+		return numberOfCrawlers;
+	}
+	
+	public boolean isIncrementalCrawling() {
+		return incrementalCrawling;
+	}
+	
+	public boolean isTrustDirectoryTimes() {
+		return trustDirectoryTimes;
+	}
+	
+	public boolean isContinuousCrawling() {
+		return continuousCrawling;
+	}
+	
+	public long getWatchEventDelay() {
+		return watchEventDelay;
+	}
+	
+	public TraversalOrder getTraversalOrder() {
+		return traversalOrder;
+	}
+	
+	public int getMaxPendingDirectories() {
+		return maxPendingDirectories;
+	}
+	
+	public int getForkJoinParallelism() {
+		return forkJoinParallelism;
+	}
+	
+	public int getMaxConcurrentProcessing() {
+		return maxConcurrentProcessing;
+	}
 }
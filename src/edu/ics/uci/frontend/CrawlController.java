@@ -15,12 +15,35 @@
 package edu.ics.uci.frontend;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
 
 import org.apache.log4j.Logger;
 
+import edu.ics.uci.backend.AdaptiveThrottle;
+import edu.ics.uci.backend.BloomFilter;
 import edu.ics.uci.backend.Configurable;
+import edu.ics.uci.backend.Counters;
+import edu.ics.uci.backend.CrawlMetrics;
+import edu.ics.uci.backend.DuplicateFinder;
+import edu.ics.uci.backend.FileStateTable;
 import edu.ics.uci.backend.Frontier;
 import edu.ics.uci.backend.IO;
+import edu.ics.uci.backend.LatencyHistogram;
+import edu.ics.uci.backend.ProgressReporter;
+import edu.ics.uci.backend.RateLimiter;
 
 /**
  * This project is based on the open-source project "Crawler4j" 
@@ -40,6 +63,63 @@ public class CrawlController extends Configurable {
 	 */
 	protected boolean finished;
 	
+	/**
+	 * Runs process() and visit() calls when maxConcurrentProcessing is set.
+	 */
+	private ExecutorService processingExecutor;
+	
+	/**
+	 * Bounds the number of process() and visit() calls in flight.
+	 */
+	private Semaphore processingPermits;
+	
+	/**
+	 * Hashes file contents when a content hash algorithm is set.
+	 */
+	private ExecutorService hashingExecutor;
+	
+	/**
+	 * Bounds the number of files waiting to be hashed.
+	 */
+	private Semaphore hashingPermits;
+	
+	/**
+	 * Watches the visited directories, or null unless crawling is continuous.
+	 */
+	private DirectoryWatcher watcher;
+	
+	/**
+	 * Limit the files and bytes all crawlers process per second.
+	 */
+	private final RateLimiter fileRateLimiter;
+	private final RateLimiter byteRateLimiter;
+	
+	/**
+	 * Paces all crawlers to the target latency, or null if none is set.
+	 */
+	private AdaptiveThrottle throttle;
+	
+	/**
+	 * Logs the crawl's progress, or null.
+	 */
+	private ProgressReporter progressReporter;
+	
+	/**
+	 * Registered over JMX while crawling, if enabled.
+	 */
+	private ObjectName monitorName;
+	
+	/**
+	 * Serves metrics while crawling, or null.
+	 */
+	private MetricsServer metricsServer;
+	
+	/**
+	 * Crawlers wait on this while the crawl is paused.
+	 */
+	private final Object pauseLock = new Object();
+	private volatile boolean paused = false;
+	
 	public CrawlController(CrawlConfig config) throws Exception {
 		super(config);
 		config.validate();
@@ -55,38 +135,445 @@ public class CrawlController extends Configurable {
 		}
 		boolean resumable = config.isResumableCrawling();		
 		if(!resumable) {
-			IO.deleteFolderContents(crawlStorageFolder);
+			if(config.isIncrementalCrawling()) {
+				/*
+				 * Keep the file states of the last crawl.
+				 */
+				IO.deleteFolderContents(crawlStorageFolder, Frontier.FILE_STATES_NAME);
+			} else {
+				IO.deleteFolderContents(crawlStorageFolder);
+			}
 		}
 		frontier = new Frontier(config);
+		fileRateLimiter = new RateLimiter(config.getMaxFilesPerSecond());
+		byteRateLimiter = new RateLimiter(config.getMaxBytesPerSecond());
+		if(config.getTargetLatency() > 0) {
+			throttle = new AdaptiveThrottle(config.getTargetLatency(), config.getMaxFilesPerSecond());
+		}
+		if(config.isContinuousCrawling()) {
+			watcher = new DirectoryWatcher(config.getWatchEventDelay());
+		}
+		if(config.getProgressInterval() > 0) {
+			progressReporter = new ProgressReporter(frontier, config.getProgressInterval(), config.isEstimateFileCount());
+		}
 		finished = false;
 	}
 	
 	public <T extends FileCrawler> void start(final Class<T> _c) {
+		int numberOfCrawlers = config.getNumberOfCrawlers();
+		long crawlStart = System.currentTimeMillis();
+		System.out.println("Crawling: " + config.getTopDirectory());
+		if(frontier.isResumed()) {
+			System.out.println("Files processed so far: " + frontier.getProcessedFileCount());
+		}
+		if(config.getMaxConcurrentProcessing() > 0) {
+			processingPermits = new Semaphore(config.getMaxConcurrentProcessing());
+			processingExecutor = newVirtualThreadExecutor();
+		}
+		if(config.getContentHashAlgorithm() != null) {
+			int hashingThreads = getHashingThreads();
+			hashingPermits = new Semaphore(hashingThreads * 2);
+			hashingExecutor = newHashingExecutor(hashingThreads);
+		}
 		try {
-			T crawler = _c.newInstance();
-			crawler.init(this);
+			List<T> crawlers = new ArrayList<T>();
+			for(int i = 1; i <= numberOfCrawlers; i++) {
+				T crawler = _c.newInstance();
+				crawler.init(i, this);
+				crawlers.add(crawler);
+			}
+			frontier.startCheckpointing();
+			if(progressReporter != null) {
+				progressReporter.start();
+			}
+			startMonitoring();
+			if(frontier.isWorkQueueTraversal()) {
+				frontier.schedule(new File(config.getPathToDirectory()), 0);
+			}
+			if(numberOfCrawlers == 1) {
+				crawlers.get(0).run();
+			} else {
+				List<Thread> threads = new ArrayList<Thread>();
+				for(T crawler : crawlers) {
+					Thread thread = new Thread(crawler, "Crawler " + crawler.getMyId());
+					thread.start();
+					threads.add(thread);
+					logger.info("Crawler " + crawler.getMyId() + " started");
+				}
+				for(Thread thread : threads) {
+					thread.join();
+				}
+			}
+			FileStateTable fileStates = frontier.getFileStates();
+			if(fileStates != null && !frontier.isStopped()) {
+				final T firstCrawler = crawlers.get(0);
+				fileStates.sweep(path -> firstCrawler.onDeleted(new File(path)));
+			}
+			if(watcher != null) {
+				/*
+				 * Keep crawling what changes until shutDown is called.
+				 */
+				System.out.println("Watching " + watcher.getWatchedDirCount() + " directories for changes");
+				watcher.watch(crawlers.get(0), crawlStart);
+			}
+			awaitProcessing();
+			DuplicateFinder duplicateFinder = frontier.getDuplicateFinder();
+			if(duplicateFinder != null) {
+				final T firstCrawler = crawlers.get(0);
+				duplicateFinder.findDuplicates(getHashingThreads(), paths -> firstCrawler.onDuplicates(toFiles(paths)));
+			}
+			frontier.syncFileStates();
+			frontier.stopCheckpointing();
+			if(frontier.isStopped()) {
+				/*
+				 * Save a stopped crawl only now that everything the crawlers
+				 * and the processing executors were still doing is in.
+				 */
+				frontier.syncAll();
+			}
+			if(progressReporter != null) {
+				progressReporter.stop();
+			}
+			if(!frontier.isFinished() && !frontier.isStopped()) {
+				frontier.finished();
+			}
+			for(T crawler : crawlers) {
+				crawler.onFinish();
+			}
+			if(config.isPrintStats()) {
+				printStats();
+			}
 			finished = true;
 		} catch (InstantiationException e) {
 			e.printStackTrace();
 		} catch (IllegalAccessException e) {
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			logger.error("Controller was interrupted while waiting for crawlers");
+			Thread.currentThread().interrupt();
+		} finally {
+			stopMonitoring();
+		}
+	}
+	
+	/**
+	 * Register the monitor MBean and start the metrics server, if enabled.
+	 */
+	private void startMonitoring() {
+		CrawlMonitor monitor = new CrawlMonitor(this);
+		if(config.isJmxEnabled()) {
+			try {
+				ObjectName name = new ObjectName("edu.ics.uci:type=CrawlController,name=" +
+						ObjectName.quote(config.getCrawlStorageFolder()));
+				ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, name);
+				monitorName = name;
+			} catch (Exception e) {
+				logger.error("Caught " + e.getClass().getSimpleName() + " registering the crawl monitor: " + e.getMessage());
+			}
+		}
+		if(config.getMetricsPort() > 0) {
+			try {
+				metricsServer = new MetricsServer(this, monitor, config.getMetricsPort(), config.getMetricsToken());
+				metricsServer.start();
+			} catch (IOException e) {
+				logger.error("Caught IOException starting the metrics server: " + e.getMessage());
+			}
+		}
+	}
+	
+	private void stopMonitoring() {
+		if(monitorName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(monitorName);
+			} catch (Exception e) {
+				logger.error("Caught " + e.getClass().getSimpleName() + " unregistering the crawl monitor: " + e.getMessage());
+			}
+			monitorName = null;
+		}
+		if(metricsServer != null) {
+			metricsServer.stop();
+			metricsServer = null;
 		}
 	}
 	
+	/**
+	 * Create a pool of daemon threads named "Hasher i".
+	 */
+	private static ExecutorService newHashingExecutor(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "Hasher " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Create an executor that starts a virtual thread per task.
+	 * Falls back to a cached thread pool when virtual threads are not
+	 * available, which processingPermits still keeps bounded.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (Exception e) {
+			logger.warn("Virtual threads are not available, processing on a cached thread pool");
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/**
+	 * Run a process() or visit() call on the processing executor,
+	 * waiting for a free permit first.
+	 */
+	protected void dispatch(Runnable task) {
+		dispatch(processingExecutor, processingPermits, task);
+	}
+	
+	/**
+	 * Run a task on the hashing threads, waiting while too many files are waiting to be hashed.
+	 */
+	protected void dispatchHashing(Runnable task) {
+		dispatch(hashingExecutor, hashingPermits, task);
+	}
+	
+	private static void dispatch(ExecutorService executor, final Semaphore permits, final Runnable task) {
+		permits.acquireUninterruptibly();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						task.run();
+					} catch (RuntimeException e) {
+						logger.error("Caught " + e.getClass().getSimpleName() + " while processing: " + e.getMessage());
+					} finally {
+						permits.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+	
+	private int getHashingThreads() {
+		int hashingThreads = config.getHashingThreads();
+		return hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+	}
+	
+	private static List<File> toFiles(List<String> paths) {
+		List<File> files = new ArrayList<File>(paths.size());
+		for(String path : paths) {
+			files.add(new File(path));
+		}
+		return files;
+	}
+	
+	/**
+	 * Wait for every dispatched process() and visit() call to return.
+	 */
+	private void awaitProcessing() throws InterruptedException {
+		/*
+		 * Hashing hands files on to processing, so it has to finish first.
+		 */
+		if(hashingExecutor != null) {
+			hashingExecutor.shutdown();
+			hashingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+		if(processingExecutor != null) {
+			processingExecutor.shutdown();
+			processingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	private void printStats() {
+		System.out.println("===Crawl Statistics===");
+		System.out.println("-Max depth detected: " + frontier.getMaxDepth());
+		System.out.println("-Directories visited: " + frontier.getSeenDirCount());
+		System.out.println("-Directories skipped: " + frontier.getSkippedDirCount());
+		System.out.println("-Files seen: " + frontier.getSeenFileCount());
+		System.out.println("-Files processed: " + frontier.getProcessedFileCount());
+		System.out.println("-Files skipped: " + frontier.getSkippedFileCount());
+		BloomFilter seenFilter = frontier.getSeenFilter();
+		if(seenFilter != null) {
+			System.out.println("-Bloom filter probes: " + seenFilter.getProbeCount());
+			System.out.println("-Bloom filter negatives: " + seenFilter.getNegativeCount());
+			System.out.println("-Bloom filter false positives: " + seenFilter.getFalsePositiveCount());
+			System.out.printf("-Bloom filter false positive rate: %.4f%n", seenFilter.getFalsePositiveRate());
+		}
+		if(throttle != null) {
+			System.out.printf("-Adaptive rate: %.1f files/s%n", throttle.getRate());
+			System.out.printf("-Average latency: %.1f us%n", throttle.getAverageLatency());
+		}
+		FileStateTable fileStates = frontier.getFileStates();
+		if(fileStates != null) {
+			System.out.println("-Files new: " + fileStates.getNewCount());
+			System.out.println("-Files modified: " + fileStates.getModifiedCount());
+			System.out.println("-Files unchanged: " + fileStates.getUnchangedCount());
+			System.out.println("-Files deleted: " + fileStates.getDeletedCount());
+		}
+		CrawlMetrics metrics = frontier.getMetrics();
+		System.out.println("-Bytes seen: " + metrics.getBytesSeen());
+		for(CrawlMetrics.Operation operation : CrawlMetrics.Operation.values()) {
+			LatencyHistogram latency = metrics.getLatency(operation);
+			if(latency.getCount() > 0) {
+				System.out.printf("-%s latency: p50 %.1f us, p99 %.1f us, max %.1f us (%d calls)%n", operation,
+						latency.getPercentile(0.5) / 1000.0, latency.getPercentile(0.99) / 1000.0,
+						latency.getMax() / 1000.0, latency.getCount());
+			}
+		}
+		DuplicateFinder duplicateFinder = frontier.getDuplicateFinder();
+		if(duplicateFinder != null) {
+			System.out.println("-Files partially hashed: " + duplicateFinder.getPartialHashCount());
+			System.out.println("-Files fully hashed: " + duplicateFinder.getFullHashCount());
+			System.out.println("-Duplicate groups: " + duplicateFinder.getGroupCount());
+			System.out.println("-Duplicate files: " + duplicateFinder.getDuplicateCount());
+			System.out.println("-Duplicate bytes: " + duplicateFinder.getDuplicateBytes());
+		}
+	}
+	
+	/**
+	 * Change how many files all crawlers together process per second, or 0 for no limit.
+	 */
+	public void setMaxFilesPerSecond(double maxFilesPerSecond) {
+		fileRateLimiter.setRate(maxFilesPerSecond);
+	}
+	
+	/**
+	 * Change how many bytes of files all crawlers together process per second, or 0 for no limit.
+	 */
+	public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+		byteRateLimiter.setRate(maxBytesPerSecond);
+	}
+	
+	public double getMaxFilesPerSecond() {
+		return fileRateLimiter.getRate();
+	}
+	
+	public long getMaxBytesPerSecond() {
+		return (long) byteRateLimiter.getRate();
+	}
+	
+	protected RateLimiter getFileRateLimiter() {
+		return fileRateLimiter;
+	}
+	
+	protected RateLimiter getByteRateLimiter() {
+		return byteRateLimiter;
+	}
+	
+	protected AdaptiveThrottle getThrottle() {
+		return throttle;
+	}
+	
+	protected DirectoryWatcher getWatcher() {
+		return watcher;
+	}
+	
+	/**
+	 * Return the progress reporter, or null if progress isn't reported.
+	 */
+	public ProgressReporter getProgressReporter() {
+		return progressReporter;
+	}
+	
 	protected Frontier getFrontier() {
 		return frontier;
 	}
 	
-	public int getProcessedFileCount() {
+	public long getProcessedFileCount() {
 		return frontier.getProcessedFileCount();
 	}
 	
+	/**
+	 * Return a copy of the counters, taken at once. Safe to call while crawling.
+	 */
+	public Counters getCounters() {
+		return frontier.getCounters();
+	}
+	
+	/**
+	 * Return a copy of the crawl's metrics so far. Safe to call while crawling.
+	 */
+	public CrawlMetrics getMetrics() {
+		return frontier.getMetrics().snapshot();
+	}
+	
 	public boolean isFinished() {
 		return finished;
 	}
 	
+	/**
+	 * Hold every crawler before its next file or directory until resume() is called.
+	 */
+	public void pause() {
+		paused = true;
+		logger.info("Crawl paused");
+	}
+	
+	public void resume() {
+		synchronized(pauseLock) {
+			paused = false;
+			pauseLock.notifyAll();
+		}
+		logger.info("Crawl resumed");
+	}
+	
+	public boolean isPaused() {
+		return paused;
+	}
+	
+	/**
+	 * Wait while the crawl is paused.
+	 */
+	void awaitResume() {
+		if(!paused) {
+			return;
+		}
+		synchronized(pauseLock) {
+			while(paused) {
+				try {
+					pauseLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Return the number of process() and visit() calls dispatched but not yet returned.
+	 */
+	int getProcessingInFlight() {
+		return processingPermits != null ? config.getMaxConcurrentProcessing() - processingPermits.availablePermits() : 0;
+	}
+	
+	/**
+	 * Return the number of files dispatched for hashing but not yet hashed.
+	 */
+	int getHashingInFlight() {
+		return hashingPermits != null ? getHashingThreads() * 2 - hashingPermits.availablePermits() : 0;
+	}
+	
+	/**
+	 * Stop the crawl once each crawler finishes the directory it is in, and
+	 * stop watching for changes. This only signals the stop: start() returns
+	 * once the files already handed out are processed, after saving what a
+	 * resumable crawl needs to pick up from there. A crawl stopped early
+	 * isn't marked finished.
+	 */
 	public void shutDown() {
 		logger.info("Controller is shutting down...");
-		frontier.syncAll();
+		frontier.stop();
+		resume();
+		if(watcher != null) {
+			watcher.close();
+		}
 	}
 }
@@ -0,0 +1,149 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.frontend;
+
+import edu.ics.uci.backend.Checkpointer;
+import edu.ics.uci.backend.Frontier;
+import edu.ics.uci.backend.ProgressReporter;
+
+/**
+ * Reads the state of a crawl from its controller for JMX and the metrics
+ * endpoint. Every value is sampled from counters crawlers update without
+ * locking, or read under a lock held only long enough to copy a size.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class CrawlMonitor implements CrawlMonitorMBean {
+	
+	private final CrawlController crawlController;
+	private final Frontier frontier;
+	
+	public CrawlMonitor(CrawlController crawlController) {
+		this.crawlController = crawlController;
+		frontier = crawlController.getFrontier();
+	}
+	
+	public int getMaxDepth() {
+		return frontier.getMaxDepth();
+	}
+	
+	public long getVisitedDirCount() {
+		return frontier.getSeenDirCount();
+	}
+	
+	public long getSkippedDirCount() {
+		return frontier.getSkippedDirCount();
+	}
+	
+	public long getProcessedFileCount() {
+		return frontier.getProcessedFileCount();
+	}
+	
+	public long getSkippedFileCount() {
+		return frontier.getSkippedFileCount();
+	}
+	
+	public long getSeenFileCount() {
+		return frontier.getSeenFileCount();
+	}
+	
+	public long getBytesSeen() {
+		return frontier.getMetrics().getBytesSeen();
+	}
+	
+	public long getExpectedFileCount() {
+		return frontier.getExpectedFileCount();
+	}
+	
+	public int getPendingDirCount() {
+		return frontier.getPendingDirCount();
+	}
+	
+	public int getProcessingInFlight() {
+		return crawlController.getProcessingInFlight();
+	}
+	
+	public int getHashingInFlight() {
+		return crawlController.getHashingInFlight();
+	}
+	
+	public double getFilesPerSecond() {
+		ProgressReporter progressReporter = crawlController.getProgressReporter();
+		return progressReporter != null ? progressReporter.getFilesPerSecond() : 0;
+	}
+	
+	public double getDirsPerSecond() {
+		ProgressReporter progressReporter = crawlController.getProgressReporter();
+		return progressReporter != null ? progressReporter.getDirsPerSecond() : 0;
+	}
+	
+	public double getBytesPerSecond() {
+		ProgressReporter progressReporter = crawlController.getProgressReporter();
+		return progressReporter != null ? progressReporter.getBytesPerSecond() : 0;
+	}
+	
+	public long getRemainingTime() {
+		ProgressReporter progressReporter = crawlController.getProgressReporter();
+		return progressReporter != null ? progressReporter.getRemainingTime() : -1;
+	}
+	
+	public long getSeenFilesFootprint() {
+		return frontier.getSeenFilesFootprint();
+	}
+	
+	public long getHeapUsed() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	public long getCheckpointCount() {
+		Checkpointer checkpointer = frontier.getCheckpointer();
+		return checkpointer != null ? checkpointer.getCheckpointCount() : 0;
+	}
+	
+	public long getLastCheckpointDuration() {
+		Checkpointer checkpointer = frontier.getCheckpointer();
+		return checkpointer != null ? checkpointer.getLastCheckpointDuration() : 0;
+	}
+	
+	public long getTotalCheckpointDuration() {
+		Checkpointer checkpointer = frontier.getCheckpointer();
+		return checkpointer != null ? checkpointer.getTotalCheckpointDuration() : 0;
+	}
+	
+	public boolean isPaused() {
+		return crawlController.isPaused();
+	}
+	
+	public boolean isFinished() {
+		return crawlController.isFinished();
+	}
+	
+	public void pause() {
+		crawlController.pause();
+	}
+	
+	public void resume() {
+		crawlController.resume();
+	}
+	
+	public void shutDown() {
+		crawlController.shutDown();
+	}
+}
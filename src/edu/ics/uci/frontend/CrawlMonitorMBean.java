@@ -0,0 +1,109 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.frontend;
+
+/**
+ * The state of a running crawl, and the operations to control it,
+ * as exposed over JMX.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public interface CrawlMonitorMBean {
+	
+	public int getMaxDepth();
+	
+	public long getVisitedDirCount();
+	
+	public long getSkippedDirCount();
+	
+	public long getProcessedFileCount();
+	
+	public long getSkippedFileCount();
+	
+	public long getSeenFileCount();
+	
+	public long getBytesSeen();
+	
+	public long getExpectedFileCount();
+	
+	/**
+	 * Directories waiting in the work queue.
+	 */
+	public int getPendingDirCount();
+	
+	/**
+	 * process() and visit() calls dispatched but not yet returned.
+	 */
+	public int getProcessingInFlight();
+	
+	/**
+	 * Files dispatched for hashing but not yet hashed.
+	 */
+	public int getHashingInFlight();
+	
+	/**
+	 * Throughput over the last ten minutes, if progress is reported.
+	 */
+	public double getFilesPerSecond();
+	
+	public double getDirsPerSecond();
+	
+	public double getBytesPerSecond();
+	
+	/**
+	 * The estimated time left in milliseconds, or -1 if unknown.
+	 */
+	public long getRemainingTime();
+	
+	/**
+	 * The bytes taken up by the seen files and their Bloom filter.
+	 */
+	public long getSeenFilesFootprint();
+	
+	public long getHeapUsed();
+	
+	public long getCheckpointCount();
+	
+	/**
+	 * How long the last checkpoint took, in milliseconds.
+	 */
+	public long getLastCheckpointDuration();
+	
+	/**
+	 * How long all checkpoints took together, in milliseconds.
+	 */
+	public long getTotalCheckpointDuration();
+	
+	public boolean isPaused();
+	
+	public boolean isFinished();
+	
+	/**
+	 * Hold every crawler before its next file or directory.
+	 */
+	public void pause();
+	
+	public void resume();
+	
+	/**
+	 * Stop the crawl once each crawler finishes the directory it is in,
+	 * and save what a resumable crawl needs to pick up from there.
+	 */
+	public void shutDown();
+}
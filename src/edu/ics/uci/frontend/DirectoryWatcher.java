@@ -0,0 +1,252 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.frontend;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import edu.ics.uci.backend.DirProperties;
+
+/**
+ * Watches every directory a continuous crawl visits, and feeds the
+ * entries created, modified or deleted in them back to a crawler once
+ * the first walk is done. Events are collected until none arrive for
+ * the configured delay, so a burst of events on the same file is
+ * handled once. A directory whose events overflowed is listed again.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class DirectoryWatcher {
+	
+	private static final Logger logger = Logger.getLogger(DirectoryWatcher.class.getName());
+	
+	/**
+	 * A burst of events is handled after at most this many event delays,
+	 * even if events keep arriving.
+	 */
+	private static final int MAX_BATCH_DELAYS = 10;
+	
+	private final WatchService watchService;
+	
+	/**
+	 * The directory each watch key belongs to.
+	 */
+	private final Map<WatchKey, DirProperties> watchedDirs = new ConcurrentHashMap<WatchKey, DirProperties>();
+	
+	/**
+	 * The depth of each watched directory.
+	 */
+	private final Map<Path, Integer> watchedPaths = new ConcurrentHashMap<Path, Integer>();
+	
+	/**
+	 * How long to wait for more events before handling those collected, in milliseconds.
+	 */
+	private final long eventDelay;
+	
+	private volatile boolean closed = false;
+	
+	private volatile long eventCount = 0;
+	private volatile long rescanCount = 0;
+	
+	public DirectoryWatcher(long eventDelay) throws IOException {
+		this.eventDelay = eventDelay;
+		watchService = FileSystems.getDefault().newWatchService();
+	}
+	
+	/**
+	 * Start watching a directory for entries being created, modified or deleted.
+	 */
+	public void register(DirProperties dirProperties) {
+		Path dir = dirProperties.getFile().toPath();
+		try {
+			WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+			watchedDirs.put(key, dirProperties);
+			watchedPaths.put(dir, dirProperties.getDepth());
+		} catch (IOException e) {
+			logger.error("Caught IOException watching: " + dir);
+		} catch (ClosedWatchServiceException e) {
+			/*
+			 * The crawl is shutting down.
+			 */
+		}
+	}
+	
+	public boolean isWatched(Path dir) {
+		return watchedPaths.containsKey(dir);
+	}
+	
+	public int getWatchedDirCount() {
+		return watchedDirs.size();
+	}
+	
+	public long getEventCount() {
+		return eventCount;
+	}
+	
+	public long getRescanCount() {
+		return rescanCount;
+	}
+	
+	/**
+	 * Hand changes to the crawler until the watcher is closed.
+	 * Files modified since crawlStart are processed again if a
+	 * directory has to be listed again. A file still being processed
+	 * when its change comes up is handed over again with the next batch,
+	 * which comes after an event delay at the latest.
+	 */
+	void watch(FileCrawler crawler, long crawlStart) {
+		long since = crawlStart;
+		boolean walkEvents = true;
+		Map<Path, WatchEvent.Kind<?>> retries = new LinkedHashMap<Path, WatchEvent.Kind<?>>();
+		while(!closed) {
+			Map<Path, WatchEvent.Kind<?>> changes = new LinkedHashMap<Path, WatchEvent.Kind<?>>(retries);
+			retries.clear();
+			List<DirProperties> rescans = new ArrayList<DirProperties>();
+			long batchStart;
+			try {
+				WatchKey key = changes.isEmpty() ? watchService.take() : watchService.poll(eventDelay, TimeUnit.MILLISECONDS);
+				batchStart = System.currentTimeMillis();
+				long deadline = batchStart + eventDelay * MAX_BATCH_DELAYS;
+				while(key != null) {
+					collect(key, changes, rescans);
+					long wait = Math.min(eventDelay, deadline - System.currentTimeMillis());
+					key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+				}
+			} catch (InterruptedException e) {
+				logger.error("Directory watcher was interrupted");
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ClosedWatchServiceException e) {
+				break;
+			}
+			for(DirProperties dirProperties : rescans) {
+				rescanCount++;
+				for(Path path : crawler.rescanProcedure(dirProperties, since)) {
+					retries.put(path, ENTRY_MODIFY);
+				}
+			}
+			for(Map.Entry<Path, WatchEvent.Kind<?>> change : changes.entrySet()) {
+				Path path = change.getKey();
+				if(change.getValue() == ENTRY_DELETE) {
+					if(!isWatched(path)) {
+						crawler.deletedProcedure(path.toFile());
+					}
+				} else {
+					/*
+					 * The first batch holds the events from during the walk, which
+					 * may already have processed a created file, so only files
+					 * modified since the crawl started are processed again. A path
+					 * created later holds a new file whatever its modified time,
+					 * such as one renamed over another.
+					 */
+					long modifiedSince = Long.MIN_VALUE;
+					if(change.getValue() == ENTRY_CREATE && walkEvents) {
+						modifiedSince = crawlStart;
+					}
+					if(!crawler.watchedProcedure(path.toFile(), depthOf(path), modifiedSince)) {
+						/*
+						 * Retried as a modification, which is processed whatever its modified time.
+						 */
+						retries.put(path, ENTRY_MODIFY);
+					}
+				}
+			}
+			since = batchStart;
+			walkEvents = false;
+		}
+	}
+	
+	/**
+	 * Stop watching, which ends watch().
+	 */
+	public void close() {
+		closed = true;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.error("Caught IOException closing the directory watcher");
+		}
+	}
+	
+	private void collect(WatchKey key, Map<Path, WatchEvent.Kind<?>> changes, List<DirProperties> rescans) {
+		DirProperties dirProperties = watchedDirs.get(key);
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if(dirProperties == null) {
+				continue;
+			}
+			eventCount++;
+			if(event.kind() == OVERFLOW) {
+				if(!rescans.contains(dirProperties)) {
+					rescans.add(dirProperties);
+				}
+				continue;
+			}
+			Path path = dirProperties.getFile().toPath().resolve((Path) event.context());
+			changes.put(path, merge(changes.remove(path), event.kind()));
+		}
+		if(!key.reset()) {
+			/*
+			 * The directory is gone.
+			 */
+			watchedDirs.remove(key);
+			if(dirProperties != null) {
+				watchedPaths.remove(dirProperties.getFile().toPath());
+			}
+		}
+	}
+	
+	/**
+	 * Combine the events on the same entry into the one that describes them all.
+	 */
+	private static WatchEvent.Kind<?> merge(WatchEvent.Kind<?> previous, WatchEvent.Kind<?> next) {
+		if(previous == null || next == ENTRY_DELETE) {
+			return next;
+		}
+		if(previous == ENTRY_CREATE && next == ENTRY_MODIFY) {
+			return ENTRY_CREATE;
+		}
+		/*
+		 * Deleted and created again, or modified, is a modification.
+		 */
+		return ENTRY_MODIFY;
+	}
+	
+	private int depthOf(Path path) {
+		Integer parentDepth = watchedPaths.get(path.getParent());
+		return parentDepth != null ? parentDepth + 1 : 0;
+	}
+}
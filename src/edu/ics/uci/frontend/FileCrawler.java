@@ -15,12 +15,31 @@
 package edu.ics.uci.frontend;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.log4j.Logger;
 
+import edu.ics.uci.backend.AdaptiveThrottle;
+import edu.ics.uci.backend.CrawlMetrics;
 import edu.ics.uci.backend.DirProperties;
+import edu.ics.uci.backend.DuplicateFinder;
+import edu.ics.uci.backend.FileIdentity;
 import edu.ics.uci.backend.FileProperties;
+import edu.ics.uci.backend.FileStateTable;
 import edu.ics.uci.backend.Frontier;
+import edu.ics.uci.backend.HashAlgorithm;
+import edu.ics.uci.backend.Parser;
+import edu.ics.uci.backend.RateLimiter;
 
 /**
  * This project is based on the open-source project "Crawler4j" 
@@ -29,10 +48,15 @@ import edu.ics.uci.backend.Frontier;
  * 
  * @author Paul Tapalla <ptapalla at uci dot edu>
  */
-public abstract class FileCrawler {
+public abstract class FileCrawler implements Runnable {
 	
 	private static Logger logger = Logger.getLogger(FileCrawler.class.getName());
 	
+	/**
+	 * The id of this crawler, starting at 1.
+	 */
+	private int myId;
+	
 	/**
 	 * This crawler's controller
 	 */
@@ -59,75 +83,252 @@ public abstract class FileCrawler {
 	private boolean crawlHiddenFiles;
 	
 	/**
-	 * The delay between processing files.
+	 * How files are keyed in the Frontier's seen files.
+	 */
+	private FileIdentity fileIdentity;
+	
+	/**
+	 * Paces this crawler to the configured delay between files.
+	 */
+	private RateLimiter delayLimiter;
+	
+	/**
+	 * Shared by all crawlers, limit the files and bytes processed per second.
+	 */
+	private RateLimiter fileRateLimiter;
+	private RateLimiter byteRateLimiter;
+	
+	/**
+	 * Shared by all crawlers, paces them to the target latency, or null.
+	 */
+	private AdaptiveThrottle throttle;
+	
+	/**
+	 * Hashes each file's contents before it is processed, or null.
 	 */
-	private long delay;
+	private HashAlgorithm hashAlgorithm;
+	
+	/**
+	 * Groups processed files by size, or null.
+	 */
+	private DuplicateFinder duplicateFinder;
+	
+	private CrawlMetrics metrics;
+	
+	/**
+	 * If enabled, sub directories are scheduled on the Frontier's
+	 * work queue instead of being crawled recursively.
+	 */
+	private boolean workQueueTraversal;
+	
+	/**
+	 * The number of ForkJoinPool workers, or 0 to crawl without a pool.
+	 */
+	private int forkJoinParallelism;
+	
+	/**
+	 * If enabled, process() and visit() run on the controller's
+	 * processing executor instead of the crawling thread.
+	 */
+	private boolean dispatchProcessing;
+	
+	/**
+	 * If enabled, directories are listed with a DirectoryStream and each
+	 * entry's attributes are read once and cached in its Properties.
+	 */
+	private boolean nioTraversal;
+	
+	/**
+	 * The file states of the last crawl, or null unless crawling is incremental.
+	 */
+	private FileStateTable fileStates;
+	
+	/**
+	 * If enabled, directories whose last modified time is unchanged are not listed.
+	 */
+	private boolean trustDirectoryTimes;
+	
+	/**
+	 * Watches the visited directories, or null unless crawling is continuous.
+	 */
+	private DirectoryWatcher watcher;
 
 	/**
 	 * Initialize the crawler.
 	 */
-	protected void init(CrawlController crawlController) {
+	protected void init(int myId, CrawlController crawlController) {
+		this.myId = myId;
 		this.crawlController = crawlController;
 		frontier = crawlController.getFrontier();
 		topDirectory = frontier.getConfig().getTopDirectory();
 		pathToDirectory = frontier.getConfig().getPathToDirectory();
 		crawlHiddenFiles = frontier.getConfig().isCrawlHiddenFiles();
-		delay = frontier.getConfig().getDelay();
-		logger.info("Crawler is ready");
-		if(frontier.isResumed()) {
-			System.out.println("Files processed so far: " + frontier.getProcessedFileCount());
-		}
+		fileIdentity = frontier.getConfig().getFileIdentity();
+		long delay = frontier.getConfig().getDelay();
+		/*
+		 * A bucket of one permit, so no file follows another sooner than the delay.
+		 */
+		delayLimiter = new RateLimiter(delay > 0 ? 1000.0 / delay : 0, 1);
+		fileRateLimiter = crawlController.getFileRateLimiter();
+		byteRateLimiter = crawlController.getByteRateLimiter();
+		throttle = crawlController.getThrottle();
+		hashAlgorithm = frontier.getConfig().getContentHashAlgorithm();
+		duplicateFinder = frontier.getDuplicateFinder();
+		metrics = frontier.getMetrics();
+		workQueueTraversal = frontier.isWorkQueueTraversal();
+		forkJoinParallelism = frontier.getConfig().getForkJoinParallelism();
+		dispatchProcessing = frontier.getConfig().getMaxConcurrentProcessing() > 0;
+		nioTraversal = frontier.getConfig().isNioTraversal();
+		fileStates = frontier.getFileStates();
+		trustDirectoryTimes = frontier.getConfig().isTrustDirectoryTimes();
+		watcher = crawlController.getWatcher();
+		logger.info("Crawler " + myId + " is ready");
+	}
+	
+	/**
+	 * Run this crawler until there is nothing left to crawl.
+	 * onFinish() is called by the controller once all crawlers are done.
+	 */
+	public void run() {
 		onStart();
 		crawl();
-		onFinish();
-		if(frontier.getConfig().isPrintStats()) {
-			printStats();
+	}
+	
+	/**
+	 * Begin the crawl
+	 */
+	private void crawl() {
+		if(forkJoinParallelism > 0) {
+			File dir = new File(pathToDirectory);
+			ForkJoinPool pool = new ForkJoinPool(forkJoinParallelism);
+			try {
+				pool.invoke(new DirectoryAction(dir, readAttributes(dir), 0));
+			} finally {
+				pool.shutdown();
+			}
+		} else if(!workQueueTraversal) {
+			File dir = new File(pathToDirectory);
+			recursiveProcedure(dir, readAttributes(dir), 0);
+		} else {
+			queueProcedure();
 		}
+		logger.info("Crawler " + myId + " is done");
 	}
 	
-	private void printStats() {
-		System.out.println("===Crawl Statistics===");
-		System.out.println("-Max depth detected: " + frontier.getMaxDepth());
-		System.out.println("-Directories visited: " + frontier.getSeenDirCount());
-		System.out.println("-Directories skipped: " + frontier.getSkippedDirCount());
-		System.out.println("-Files seen: " + frontier.getSeenFileCount());
-		System.out.println("-Files processed: " + frontier.getProcessedFileCount());
-		System.out.println("-Files skipped: " + frontier.getSkippedFileCount());
+	/**
+	 * Crawl directories from the Frontier's work queue until it is empty
+	 * and no other crawler can add to it.
+	 */
+	private void queueProcedure() {
+		while(true) {
+			DirProperties dirProperties;
+			try {
+				dirProperties = frontier.getNextDirectory();
+			} catch (InterruptedException e) {
+				logger.error("Crawler " + myId + " was interrupted");
+				Thread.currentThread().interrupt();
+				break;
+			}
+			if(dirProperties == null) {
+				break;
+			}
+			try {
+				recursiveProcedure(dirProperties.getFile(), dirProperties.getCachedAttributes(), dirProperties.getDepth());
+			} finally {
+				frontier.completed(dirProperties);
+			}
+		}
 	}
 	
 	/**
-	 * Begin the crawl
+	 * Crawl an entry the directory watcher found created or modified.
+	 * A directory that isn't watched yet is crawled in full. A file is
+	 * processed if it wasn't seen, or was modified at or after modifiedSince.
+	 * Returns false if the file was still being processed, so the watcher
+	 * has to hand it over again later.
 	 */
-	private void crawl() {
-		System.out.println("Crawling: " + topDirectory);
-		File dir = new File(pathToDirectory);
-		recursiveProcedure(dir, 0);
-		if(frontier.isFinished()) {
-			frontier.finished();
+	boolean watchedProcedure(File file, int depth, long modifiedSince) {
+		BasicFileAttributes attributes = readAttributes(file.toPath());
+		if(attributes == null) {
+			/*
+			 * Deleted again before we got to it.
+			 */
+			return true;
+		}
+		if(attributes.isDirectory()) {
+			if(!watcher.isWatched(file.toPath())) {
+				recursiveProcedure(file, attributes, depth);
+				if(workQueueTraversal) {
+					queueProcedure();
+				}
+			}
+		} else if(attributes.isRegularFile()) {
+			frontier.setMaxDepth(depth);
+			return fileProcedure(file, attributes, depth+1, attributes.lastModifiedTime().toMillis() >= modifiedSince);
+		}
+		return true;
+	}
+	
+	/**
+	 * Handle a file the directory watcher found deleted. Files identified by
+	 * path leave the seen files, so one created at the same path is crawled
+	 * again. The file key of a deleted file can't be read any more, but a
+	 * file created in its place gets a key of its own.
+	 */
+	void deletedProcedure(File file) {
+		if(fileIdentity == FileIdentity.PATH) {
+			frontier.remove(fileIdentity.getKey(file));
+		}
+		onDeleted(file);
+	}
+	
+	/**
+	 * List a watched directory again after its events were lost,
+	 * crawling every entry that may have changed since modifiedSince.
+	 * Returns the entries still being processed, to be handed over again later.
+	 */
+	List<Path> rescanProcedure(DirProperties dirProperties, long modifiedSince) {
+		List<Path> retries = new ArrayList<Path>();
+		DirectoryStream<Path> stream = null;
+		try {
+			stream = dirProperties.entries();
+			for(Path entry : stream) {
+				if(!watchedProcedure(entry.toFile(), dirProperties.getDepth() + 1, modifiedSince)) {
+					retries.add(entry);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Caught IOException listing: " + dirProperties.getPath());
+		} catch (DirectoryIteratorException e) {
+			logger.error("Caught IOException listing: " + dirProperties.getPath());
+		} finally {
+			close(stream);
 		}
-		logger.info("Crawler is done");
+		return retries;
 	}
 	
 	/**
 	 * A sub-routine for the crawl() method.
 	 * Recursively go through the top directory and process files.
+	 * The attributes are null unless crawling with NIO.
 	 */
-	private void recursiveProcedure(File file, int depth) {
+	private void recursiveProcedure(File file, BasicFileAttributes attributes, int depth) {
 		// Determine if this is the deepest depth.
 		frontier.setMaxDepth(depth);
 		// If this file is a directory...
-		if(file.isDirectory()) {
-			if(file.isHidden() && crawlHiddenFiles) {
+		if(isDirectory(file, attributes)) {
+			boolean hidden = file.isHidden();
+			if(hidden && crawlHiddenFiles) {
 				/*
 				 * The directory is hidden and we're allowed to process it.
 				 * shouldVisit returned true.
 				 */
-				directoryProcedure(file, depth);
-			} else if(!file.isHidden()) {
+				directoryProcedure(file, attributes, depth);
+			} else if(!hidden) {
 				/*
 				 * The directory is not hidden.
 				 */
-				directoryProcedure(file, depth);
+				directoryProcedure(file, attributes, depth);
 			} else {
 				/*
 				 * You're here because the directory is hidden
@@ -135,11 +336,11 @@ public abstract class FileCrawler {
 				 */
 				frontier.incrementSkippedDirs();
 			}
-		} else if(file.isFile()) {
+		} else if(attributes != null ? attributes.isRegularFile() : file.isFile()) {
 			/* If this is a file, run the fileProcedure.
 			 * The depth of this file would be one greater than the current depth.
 			 */
-			fileProcedure(file, depth+1);
+			fileProcedure(file, attributes, depth+1, false);
 		}
 	}
 	
@@ -147,49 +348,235 @@ public abstract class FileCrawler {
 	 * Visit a directory if allowed to, process it if specified.
 	 * Process traverse through all sub directories and files.
 	 */
-	private void directoryProcedure(File dir, int depth) {
+	private void directoryProcedure(File dir, BasicFileAttributes attributes, int depth) {
+		crawlController.awaitResume();
+		if(!workQueueTraversal && frontier.isStopped()) {
+			/*
+			 * A recursive crawl that resumes walks the whole tree again anyway.
+			 */
+			return;
+		}
 		if(shouldVisit(dir.getPath(), depth)) {
-			DirProperties dirProperties = new DirProperties(dir, depth);
-			visit(dirProperties);
+			final DirProperties dirProperties = new DirProperties(dir, depth, attributes);
+			if(dispatchProcessing) {
+				crawlController.dispatch(new Runnable() {
+					public void run() {
+						visit(dirProperties);
+					}
+				});
+			} else {
+				visit(dirProperties);
+			}
 			frontier.incrementVisitedDirs();
-			File[] subDirs = dir.listFiles();
-			if(subDirs.length > 0) {
-				depth++;
-				for(int i = 0; i < subDirs.length; i++) {
-					recursiveProcedure(subDirs[i], depth);
+			if(watcher != null) {
+				watcher.register(dirProperties);
+			}
+			depth++;
+			List<DirectoryAction> subTasks = new ArrayList<DirectoryAction>(0);
+			long dirKey = 0;
+			long dirModified = 0;
+			String[] unchangedSubdirs = null;
+			if(fileStates != null) {
+				dirKey = Parser.getFingerprint(dir.getAbsolutePath());
+				dirModified = dirProperties.getLastModified();
+				if(trustDirectoryTimes) {
+					unchangedSubdirs = fileStates.getUnchangedSubdirectories(dirKey, dirModified);
 				}
 			}
+			if(unchangedSubdirs != null) {
+				/*
+				 * Nothing was added, removed or renamed here since the last crawl,
+				 * so only the sub directories need crawling.
+				 */
+				fileStates.keepDirectory(dirKey);
+				for(int i = 0; i < unchangedSubdirs.length; i++) {
+					File child = new File(unchangedSubdirs[i]);
+					BasicFileAttributes childAttributes = nioTraversal ? readAttributes(child) : null;
+					if(!nioTraversal || childAttributes != null) {
+						childProcedure(child, childAttributes, depth, subTasks);
+					}
+				}
+			} else {
+				listProcedure(dirProperties, dirKey, dirModified, depth, subTasks);
+			}
+			for(int i = subTasks.size() - 1; i >= 0; i--) {
+				subTasks.get(i).join();
+			}
 		} else {
 			frontier.incrementSkippedDirs();
 		}
 	}
 	
+	/**
+	 * List a directory and crawl each of its entries.
+	 */
+	private void listProcedure(DirProperties dirProperties, long dirKey, long dirModified, int depth, List<DirectoryAction> subTasks) {
+		List<String> subdirs = fileStates != null ? new ArrayList<String>() : null;
+		/*
+		 * Files are handled as the stream returns them, so huge directories
+		 * are never loaded into memory all at once. Sub directories are only
+		 * crawled once the stream is closed, so a deep tree doesn't hold a
+		 * file descriptor open for every directory above the one being listed.
+		 */
+		List<File> childDirs = new ArrayList<File>();
+		List<BasicFileAttributes> childDirAttributes = new ArrayList<BasicFileAttributes>();
+		DirectoryStream<Path> stream = null;
+		long listStart = System.nanoTime();
+		long listNanos = 0;
+		try {
+			stream = dirProperties.entries();
+			Iterator<Path> entries = stream.iterator();
+			while(entries.hasNext()) {
+				Path entry = entries.next();
+				/*
+				 * Only the time spent reading entries counts as listing,
+				 * not the time spent crawling them.
+				 */
+				listNanos += System.nanoTime() - listStart;
+				File child = entry.toFile();
+				BasicFileAttributes entryAttributes = null;
+				if(nioTraversal) {
+					/*
+					 * A single stat for each entry.
+					 */
+					entryAttributes = readAttributes(entry);
+					if(entryAttributes == null) {
+						continue;
+					}
+				}
+				if(isDirectory(child, entryAttributes)) {
+					if(subdirs != null) {
+						subdirs.add(child.getPath());
+					}
+					childDirs.add(child);
+					childDirAttributes.add(entryAttributes);
+				} else if(entryAttributes != null ? entryAttributes.isRegularFile() : child.isFile()) {
+					frontier.setMaxDepth(depth);
+					fileProcedure(child, entryAttributes, depth+1, false);
+				}
+				listStart = System.nanoTime();
+			}
+			listNanos += System.nanoTime() - listStart;
+			metrics.record(CrawlMetrics.Operation.LIST, listNanos);
+			if(subdirs != null) {
+				fileStates.updateDirectory(dirKey, dirModified, subdirs.toArray(new String[subdirs.size()]));
+			}
+		} catch (IOException e) {
+			logger.error("Caught IOException listing: " + dirProperties.getPath());
+			keepDirectory(dirKey);
+		} catch (DirectoryIteratorException e) {
+			logger.error("Caught IOException listing: " + dirProperties.getPath());
+			keepDirectory(dirKey);
+		} finally {
+			close(stream);
+		}
+		for(int i = 0; i < childDirs.size(); i++) {
+			childProcedure(childDirs.get(i), childDirAttributes.get(i), depth, subTasks);
+		}
+	}
+	
+	/**
+	 * Keep the file states of a directory that couldn't be listed,
+	 * so its files aren't taken for deleted.
+	 */
+	private void keepDirectory(long dirKey) {
+		if(fileStates != null) {
+			fileStates.keepDirectory(dirKey);
+		}
+	}
+	
+	/**
+	 * Hand an entry of a visited directory to the right procedure.
+	 * Sub directories forked as ForkJoin tasks are added to subTasks.
+	 */
+	private void childProcedure(File child, BasicFileAttributes attributes, int depth, List<DirectoryAction> subTasks) {
+		if(workQueueTraversal && isDirectory(child, attributes)) {
+			/*
+			 * Let any idle crawler pick this directory up.
+			 */
+			if(!frontier.schedule(new DirProperties(child, depth, attributes))) {
+				/*
+				 * The work queue is full, so crawl the directory here instead.
+				 * This holds off this crawler's scheduling until the others catch up.
+				 */
+				recursiveProcedure(child, attributes, depth);
+			}
+		} else if(forkJoinParallelism > 0 && isDirectory(child, attributes)) {
+			/*
+			 * Fork the sub directory right away so idle workers
+			 * can steal it while we process the files here.
+			 */
+			DirectoryAction subTask = new DirectoryAction(child, attributes, depth);
+			subTask.fork();
+			subTasks.add(subTask);
+		} else {
+			recursiveProcedure(child, attributes, depth);
+		}
+	}
+	
+	/**
+	 * A directory crawled as its own ForkJoin task.
+	 * The depth travels with the task so each subtree keeps the same
+	 * depth it would have had in a recursive crawl.
+	 */
+	private class DirectoryAction extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final File dir;
+		private final transient BasicFileAttributes attributes;
+		private final int depth;
+		
+		private DirectoryAction(File dir, BasicFileAttributes attributes, int depth) {
+			this.dir = dir;
+			this.attributes = attributes;
+			this.depth = depth;
+		}
+		
+		@Override
+		protected void compute() {
+			recursiveProcedure(dir, attributes, depth);
+		}
+	}
+	
 	/**
 	 * Determine if we've seen this file.
-	 * If we have, skip it.
+	 * If we have, skip it, unless force is set.
 	 * If we haven't, process it, if we're allowed to.
+	 * Returns false if force is set but the file is still being processed,
+	 * as processing it again at the same time would race with it.
 	 */
-	private void fileProcedure(File file, int depth) {
-		int hash = file.getAbsolutePath().hashCode();
-		if(!frontier.seen(hash)) {
+	private boolean fileProcedure(File file, BasicFileAttributes attributes, int depth, boolean force) {
+		long key = fileIdentity.getKey(file, attributes);
+		if(frontier.claim(key, file, depth, force)) {
 			delay();
-			FileProperties fileProperties = new FileProperties(file, depth);
-			if(file.isHidden() && crawlHiddenFiles) {
-				if(shouldProcess(file.getPath(), depth)) {
+			if(attributes == null && throttle != null) {
+				/*
+				 * The throttle measures the stat of every file.
+				 */
+				attributes = readAttributes(file.toPath());
+			}
+			FileProperties fileProperties = new FileProperties(file, depth, attributes, throttle);
+			metrics.fileSeen(file.getName(), depth, fileProperties.getSize());
+			boolean hidden = file.isHidden();
+			if(hidden && crawlHiddenFiles) {
+				if(callShouldProcess(file, depth)) {
 					/*
 					 * The file is hidden and we're allowed to process it.
 					 * shouldProcess returned true.
 					 */
-					process(fileProperties);
-					frontier.incrementProcessedFiles();
+					changedProcedure(fileProperties, key);
+				} else {
+					frontier.add(key);
 				}
-			} else if(!file.isHidden()) {
-				if(shouldProcess(file.getPath(), depth)) {
+			} else if(!hidden) {
+				if(callShouldProcess(file, depth)) {
 					/*
 					 * The file is not hidden and shouldProcess returned true.
 					 */
-					process(fileProperties);
-					frontier.incrementProcessedFiles();
+					changedProcedure(fileProperties, key);
+				} else {
+					frontier.add(key);
 				}
 			} else {
 				/*
@@ -197,20 +584,177 @@ public abstract class FileCrawler {
 				 * and we're not allowed to process hidden files.
 				 */
 				frontier.incrementSkippedFiles();
+				frontier.add(key);
 			}
-			frontier.add(hash);
 		} else {
 			//TODO maybe notify user of files skipped?
 			//We don't need to increment skipped files because we did it above.
+			return !force;
 		}
+		return true;
 	}
 	
 	/**
-	 * Pause the crawl for the specified delay
+	 * Call shouldProcess() and record how long it took.
+	 */
+	private boolean callShouldProcess(File file, int depth) {
+		long start = System.nanoTime();
+		boolean shouldProcess = shouldProcess(file.getPath(), depth);
+		metrics.recordSince(CrawlMetrics.Operation.SHOULD_PROCESS, start);
+		return shouldProcess;
+	}
+	
+	/**
+	 * Return true if this is a directory, using the cached attributes if there are any.
+	 */
+	private boolean isDirectory(File file, BasicFileAttributes attributes) {
+		if(attributes != null) {
+			return attributes.isDirectory();
+		}
+		long start = System.nanoTime();
+		boolean directory = file.isDirectory();
+		metrics.recordSince(CrawlMetrics.Operation.STAT, start);
+		return directory;
+	}
+	
+	/**
+	 * Read a file's attributes in a single stat when crawling with NIO.
+	 * Returns null when not crawling with NIO, or if the file can't be read.
+	 */
+	private BasicFileAttributes readAttributes(File file) {
+		return nioTraversal ? readAttributes(file.toPath()) : null;
+	}
+	
+	private BasicFileAttributes readAttributes(Path path) {
+		try {
+			long start = System.nanoTime();
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			long nanos = System.nanoTime() - start;
+			metrics.record(CrawlMetrics.Operation.STAT, nanos);
+			if(throttle != null) {
+				throttle.record(nanos);
+			}
+			return attributes;
+		} catch (IOException e) {
+			logger.error("Caught IOException reading the attributes of: " + path);
+			return null;
+		}
+	}
+	
+	private static void close(DirectoryStream<Path> stream) {
+		if(stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				logger.error("Caught IOException closing a directory stream");
+			}
+		}
+	}
+	
+	/**
+	 * Process a file unless an incremental crawl finds it unchanged since the last crawl.
+	 */
+	private void changedProcedure(FileProperties fileProperties, long key) {
+		if(fileStates != null) {
+			File parent = fileProperties.getFile().getAbsoluteFile().getParentFile();
+			long parentKey = parent != null ? Parser.getFingerprint(parent.getPath()) : 0;
+			FileStateTable.Change change = fileStates.check(key, fileProperties.getSize(),
+					fileProperties.getLastModified(), parentKey, fileProperties.getPath());
+			if(change == FileStateTable.Change.UNCHANGED) {
+				/*
+				 * An unchanged file may still have a new copy elsewhere.
+				 */
+				if(duplicateFinder != null) {
+					duplicateFinder.add(fileProperties.getPath(), fileProperties.getSize(), null);
+				}
+				frontier.add(key);
+				return;
+			}
+		}
+		processProcedure(fileProperties, key);
+	}
+	
+	private void processProcedure(final FileProperties fileProperties, final long key) {
+		if(byteRateLimiter.getRate() > 0) {
+			byteRateLimiter.acquire(fileProperties.getSize());
+		}
+		if(hashAlgorithm != null) {
+			/*
+			 * Hash on the hashing threads, which then hand the file on to processing.
+			 */
+			crawlController.dispatchHashing(new Runnable() {
+				public void run() {
+					try {
+						fileProperties.hashContent(hashAlgorithm);
+					} catch (IOException e) {
+						logger.error("Caught IOException hashing: " + fileProperties.getPath());
+					}
+					runProcedure(fileProperties, key);
+				}
+			});
+		} else {
+			runProcedure(fileProperties, key);
+		}
+	}
+	
+	/**
+	 * Call process(), on the processing executor if enabled. The file is
+	 * recorded for duplicate detection here, after hashing, so a SHA-256
+	 * digest is passed along instead of being taken again.
+	 */
+	private void runProcedure(final FileProperties fileProperties, final long key) {
+		if(duplicateFinder != null) {
+			String sha256 = hashAlgorithm == HashAlgorithm.SHA_256 ? fileProperties.getContentHash() : null;
+			duplicateFinder.add(fileProperties.getPath(), fileProperties.getSize(), sha256);
+		}
+		if(dispatchProcessing) {
+			crawlController.dispatch(new Runnable() {
+				public void run() {
+					callProcess(fileProperties, key);
+				}
+			});
+		} else {
+			callProcess(fileProperties, key);
+		}
+	}
+	
+	/**
+	 * Call process(), then add the file to the seen files and record the
+	 * state it was processed in. A file whose processing never finished
+	 * is crawled again on resume, and processed again by the next
+	 * incremental crawl. If process() throws, the file's claim is
+	 * released without adding it, so it can still be claimed again.
+	 */
+	private void callProcess(FileProperties fileProperties, long key) {
+		long start = System.nanoTime();
+		boolean processed = false;
+		try {
+			process(fileProperties);
+			processed = true;
+		} finally {
+			if(!processed) {
+				frontier.release(key);
+			}
+		}
+		metrics.recordSince(CrawlMetrics.Operation.PROCESS, start);
+		if(fileStates != null) {
+			fileStates.update(key, fileProperties.getSize(), fileProperties.getLastModified());
+		}
+		frontier.incrementProcessedFiles();
+		frontier.add(key);
+	}
+	
+	/**
+	 * Wait, without spinning, until the crawl isn't paused, and this crawler's
+	 * delay and the files per second allowed to all crawlers let another file through.
 	 */
 	private void delay() {
-		long end = System.currentTimeMillis()+delay;
-		while(System.currentTimeMillis()<end);
+		crawlController.awaitResume();
+		delayLimiter.acquire();
+		fileRateLimiter.acquire();
+		if(throttle != null) {
+			throttle.acquire();
+		}
 	}
 	
 	/**
@@ -264,6 +808,27 @@ public abstract class FileCrawler {
 		 */
 	}
 	
+	/**
+	 * Called on the first crawler once an incremental crawl is done,
+	 * for each file processed by the last crawl that this crawl didn't find,
+	 * and during a continuous crawl for each file deleted since the first walk.
+	 */
+	public void onDeleted(File file) {
+		/*
+		 * TODO implement your deleted file handling
+		 */
+	}
+	
+	/**
+	 * Called on the first crawler once the crawl is done, for each group
+	 * of files with the same contents, if duplicate detection is enabled.
+	 */
+	public void onDuplicates(List<File> files) {
+		/*
+		 * TODO implement your duplicate file handling
+		 */
+	}
+	
 	/**
 	 * What do you want to do when the crawler is done crawling?
 	 */
@@ -286,6 +851,13 @@ public abstract class FileCrawler {
 		frontier.syncAll();
 	}
 	
+	/**
+	 * Get this crawler's id.
+	 */
+	public int getMyId() {
+		return myId;
+	}
+	
 	/**
 	 * Get this crawler's controller.
 	 */
@@ -0,0 +1,286 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.frontend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.ics.uci.backend.CrawlMetrics;
+import edu.ics.uci.backend.LatencyHistogram;
+
+/**
+ * Serves the state of a crawl on localhost in the Prometheus text format
+ * at /metrics, and pauses, resumes or shuts the crawl down on a POST to
+ * /pause, /resume or /shutdown.
+ * 
+ * A POST must carry the configured token as "Authorization: Bearer
+ * <token>", or, without a token, an X-Filecrawler-Request header. Since
+ * a web page can send neither to another origin without a preflight,
+ * which isn't answered, no page in a browser on this host can steer the
+ * crawl. POSTs from a non-local Origin, or with a form's Content-Type,
+ * are turned away as well.
+ * 
+ * This project is based on the open-source project "Crawler4j" 
+ * by Yasser Ganjisaffar, and contains both duplicate and modified
+ * portions of code from the "Crawler4j" project.
+ * 
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class MetricsServer {
+	
+	private static final Logger logger = Logger.getLogger(MetricsServer.class.getName());
+	
+	private static final String PREFIX = "filecrawler_";
+	
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+	
+	private static final String REQUEST_HEADER = "X-Filecrawler-Request";
+	
+	private final CrawlMonitor monitor;
+	private final CrawlController crawlController;
+	private final String token;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	
+	/**
+	 * Serve on this port of localhost. POSTs need this token, if not null.
+	 */
+	public MetricsServer(CrawlController crawlController, CrawlMonitor monitor, int port, String token) throws IOException {
+		this.crawlController = crawlController;
+		this.monitor = monitor;
+		this.token = token;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				if(!"GET".equals(exchange.getRequestMethod())) {
+					respond(exchange, 405, "Method not allowed\n");
+				} else {
+					respond(exchange, 200, metrics());
+				}
+			}
+		});
+		server.createContext("/pause", new OperationHandler() {
+			void run(HttpExchange exchange) throws IOException {
+				MetricsServer.this.monitor.pause();
+				respond(exchange, 200, "OK\n");
+			}
+		});
+		server.createContext("/resume", new OperationHandler() {
+			void run(HttpExchange exchange) throws IOException {
+				MetricsServer.this.monitor.resume();
+				respond(exchange, 200, "OK\n");
+			}
+		});
+		server.createContext("/shutdown", new OperationHandler() {
+			void run(HttpExchange exchange) throws IOException {
+				/*
+				 * The crawl stops once the crawlers finish their directories and
+				 * the files handed out are processed, which start() waits for
+				 * before saving, so the stop is only accepted here. It's signaled
+				 * from a thread of its own, so closing the watcher never holds
+				 * up the server's only thread.
+				 */
+				respond(exchange, 202, "Accepted\n");
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						MetricsServer.this.monitor.shutDown();
+					}
+				}, "Metrics shutdown");
+				thread.start();
+			}
+		});
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "Metrics server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+	}
+	
+	public void start() {
+		server.start();
+		logger.info("Serving metrics on " + server.getAddress());
+	}
+	
+	public void stop() {
+		/*
+		 * Give requests in flight a moment to be answered.
+		 */
+		server.stop(1);
+		executor.shutdown();
+	}
+	
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+	
+	/**
+	 * Return the crawl's state in the Prometheus text format.
+	 */
+	String metrics() {
+		StringBuilder out = new StringBuilder();
+		metric(out, "dirs_visited_total", "counter", "Directories visited.", monitor.getVisitedDirCount());
+		metric(out, "dirs_skipped_total", "counter", "Directories skipped.", monitor.getSkippedDirCount());
+		metric(out, "files_processed_total", "counter", "Files processed.", monitor.getProcessedFileCount());
+		metric(out, "files_skipped_total", "counter", "Files skipped.", monitor.getSkippedFileCount());
+		metric(out, "bytes_seen_total", "counter", "Bytes of files seen by this run.", monitor.getBytesSeen());
+		metric(out, "files_seen", "gauge", "Files in the seen set.", monitor.getSeenFileCount());
+		metric(out, "files_expected", "gauge", "Files the crawl is expected to see, or 0 if unknown.", monitor.getExpectedFileCount());
+		metric(out, "max_depth", "gauge", "Deepest depth reached.", monitor.getMaxDepth());
+		metric(out, "pending_dirs", "gauge", "Directories waiting in the work queue.", monitor.getPendingDirCount());
+		metric(out, "processing_in_flight", "gauge", "Dispatched process() and visit() calls not yet returned.", monitor.getProcessingInFlight());
+		metric(out, "hashing_in_flight", "gauge", "Files dispatched for hashing not yet hashed.", monitor.getHashingInFlight());
+		metric(out, "files_per_second", "gauge", "Files seen per second over the last ten minutes.", monitor.getFilesPerSecond());
+		metric(out, "dirs_per_second", "gauge", "Directories visited per second over the last ten minutes.", monitor.getDirsPerSecond());
+		metric(out, "bytes_per_second", "gauge", "Bytes seen per second over the last ten minutes.", monitor.getBytesPerSecond());
+		long remainingTime = monitor.getRemainingTime();
+		metric(out, "remaining_seconds", "gauge", "Estimated time left, or -1 if unknown.", remainingTime >= 0 ? remainingTime / 1000.0 : -1);
+		metric(out, "seen_files_footprint_bytes", "gauge", "Bytes taken up by the seen set and its Bloom filter.", monitor.getSeenFilesFootprint());
+		metric(out, "heap_used_bytes", "gauge", "Heap in use by the JVM.", monitor.getHeapUsed());
+		metric(out, "checkpoints_total", "counter", "Checkpoints taken.", monitor.getCheckpointCount());
+		metric(out, "checkpoint_last_seconds", "gauge", "Duration of the last checkpoint.", monitor.getLastCheckpointDuration() / 1000.0);
+		metric(out, "checkpoint_seconds_total", "counter", "Duration of all checkpoints.", monitor.getTotalCheckpointDuration() / 1000.0);
+		metric(out, "paused", "gauge", "1 if the crawl is paused.", monitor.isPaused() ? 1 : 0);
+		metric(out, "finished", "gauge", "1 if the crawl is finished.", monitor.isFinished() ? 1 : 0);
+		CrawlMetrics metrics = crawlController.getMetrics();
+		String name = PREFIX + "operation_latency_seconds";
+		out.append("# HELP ").append(name).append(" Latency of stats, listings, shouldProcess() and process().\n");
+		out.append("# TYPE ").append(name).append(" summary\n");
+		for(CrawlMetrics.Operation operation : CrawlMetrics.Operation.values()) {
+			LatencyHistogram latency = metrics.getLatency(operation);
+			String label = "operation=\"" + operation.name().toLowerCase(Locale.ROOT) + "\"";
+			for(int i = 0; i < QUANTILES.length; i++) {
+				sample(out, name, label + ",quantile=\"" + QUANTILES[i] + "\"", latency.getPercentile(QUANTILES[i]) / 1e9);
+			}
+			sample(out, name + "_sum", label, latency.getTotal() / 1e9);
+			sample(out, name + "_count", label, latency.getCount());
+		}
+		return out.toString();
+	}
+	
+	private static void metric(StringBuilder out, String name, String type, String help, double value) {
+		out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+		sample(out, PREFIX + name, null, value);
+	}
+	
+	private static void sample(StringBuilder out, String name, String labels, double value) {
+		out.append(name);
+		if(labels != null) {
+			out.append('{').append(labels).append('}');
+		}
+		out.append(' ');
+		if(value == Math.rint(value) && Math.abs(value) < 1e15) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+	
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Return true if the Origin header, if any, is on this host.
+	 */
+	private static boolean isLocalOrigin(String origin) {
+		if(origin == null) {
+			return true;
+		}
+		try {
+			String host = new URI(origin).getHost();
+			return "localhost".equals(host) || "127.0.0.1".equals(host) || "[::1]".equals(host);
+		} catch (URISyntaxException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Return true if a form could have sent this Content-Type.
+	 */
+	private static boolean isFormContentType(String contentType) {
+		if(contentType == null) {
+			return false;
+		}
+		String type = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+		return type.equals("application/x-www-form-urlencoded") || type.equals("multipart/form-data")
+				|| type.equals("text/plain");
+	}
+	
+	/**
+	 * Return true if the request carries the token, or the request header if there is no token.
+	 */
+	private boolean isAuthorized(HttpExchange exchange) {
+		if(token == null) {
+			return exchange.getRequestHeaders().getFirst(REQUEST_HEADER) != null;
+		}
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if(authorization == null || !authorization.startsWith("Bearer ")) {
+			return false;
+		}
+		return MessageDigest.isEqual(authorization.substring(7).trim().getBytes(StandardCharsets.UTF_8),
+				token.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Runs an operation on an authorized POST.
+	 */
+	private abstract class OperationHandler implements HttpHandler {
+		
+		abstract void run(HttpExchange exchange) throws IOException;
+		
+		public void handle(HttpExchange exchange) throws IOException {
+			if(!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, "Method not allowed\n");
+			} else if(!isLocalOrigin(exchange.getRequestHeaders().getFirst("Origin"))) {
+				respond(exchange, 403, "Forbidden\n");
+			} else if(isFormContentType(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+				respond(exchange, 415, "Unsupported media type\n");
+			} else if(!isAuthorized(exchange)) {
+				respond(exchange, 401, "Unauthorized\n");
+			} else {
+				run(exchange);
+			}
+		}
+	}
+}
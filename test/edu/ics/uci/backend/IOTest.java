@@ -0,0 +1,150 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class IOTest {
+	
+	/**
+	 * Long enough that cutting a saved file in half cuts into the string.
+	 */
+	private static final String FIRST = String.join("", Collections.nCopies(1000, "a"));
+	private static final String SECOND = String.join("", Collections.nCopies(1000, "b"));
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void loadsWhatWasSaved() {
+		String filename = new File(folder.getRoot(), "counters.ser").getPath();
+		assertFalse(IO.isSaved(filename));
+		assertTrue(IO.save(FIRST, filename));
+		assertTrue(IO.isSaved(filename));
+		assertEquals(FIRST, IO.load(filename));
+		assertEquals(1, folder.getRoot().list().length);
+	}
+	
+	@Test
+	public void keepsThePreviousGeneration() {
+		String filename = new File(folder.getRoot(), "counters.ser").getPath();
+		IO.save(FIRST, filename);
+		IO.save(SECOND, filename);
+		assertEquals(SECOND, IO.load(filename));
+		assertEquals(FIRST, IO.load(filename + ".1"));
+	}
+	
+	@Test
+	public void fallsBackWhenTheChecksumFails() throws Exception {
+		String filename = new File(folder.getRoot(), "counters.ser").getPath();
+		IO.save(FIRST, filename);
+		IO.save(SECOND, filename);
+		RandomAccessFile raf = new RandomAccessFile(filename, "rw");
+		try {
+			raf.seek(raf.length() / 2);
+			int b = raf.read();
+			raf.seek(raf.length() / 2);
+			raf.write(b ^ 0xFF);
+		} finally {
+			raf.close();
+		}
+		assertEquals(FIRST, IO.load(filename));
+	}
+	
+	@Test
+	public void fallsBackWhenTheFileIsTruncated() throws Exception {
+		String filename = new File(folder.getRoot(), "counters.ser").getPath();
+		IO.save(FIRST, filename);
+		IO.save(SECOND, filename);
+		RandomAccessFile raf = new RandomAccessFile(filename, "rw");
+		try {
+			raf.setLength(raf.length() / 2);
+		} finally {
+			raf.close();
+		}
+		assertEquals(FIRST, IO.load(filename));
+	}
+	
+	@Test
+	public void fallsBackWhenTheFileIsMissing() {
+		String filename = new File(folder.getRoot(), "counters.ser").getPath();
+		IO.save(FIRST, filename);
+		IO.save(SECOND, filename);
+		assertTrue(new File(filename).delete());
+		assertTrue(IO.isSaved(filename));
+		assertEquals(FIRST, IO.load(filename));
+	}
+	
+	@Test
+	public void savesTheSameFileFromManyThreads() throws Exception {
+		final String filename = new File(folder.getRoot(), "dirs.ser").getPath();
+		final AtomicInteger failures = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < 4; i++) {
+			final String value = i % 2 == 0 ? FIRST : SECOND;
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					for(int j = 0; j < 50; j++) {
+						if(!IO.save(value, filename)) {
+							failures.incrementAndGet();
+						}
+					}
+				}
+			}));
+		}
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, failures.get());
+		Object loaded = IO.load(filename);
+		assertTrue(FIRST.equals(loaded) || SECOND.equals(loaded));
+		Object previous = IO.load(filename + ".1");
+		assertTrue(FIRST.equals(previous) || SECOND.equals(previous));
+		assertEquals(2, folder.getRoot().list().length);
+	}
+	
+	@Test
+	public void returnsNullWithoutAGoodGeneration() throws Exception {
+		String filename = new File(folder.getRoot(), "counters.ser").getPath();
+		IO.save(FIRST, filename);
+		RandomAccessFile raf = new RandomAccessFile(filename, "rw");
+		try {
+			raf.setLength(raf.length() / 2);
+		} finally {
+			raf.close();
+		}
+		assertNull(IO.load(filename));
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class JournalTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void replaysNothingWithoutAFile() throws Exception {
+		Journal journal = new Journal(new File(folder.getRoot(), "journal"));
+		LongHashSet keys = new LongHashSet();
+		assertNull(journal.replay(keys));
+		assertEquals(0, keys.size());
+	}
+	
+	@Test
+	public void replaysCommittedKeysAndTheNewestCounters() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		Journal journal = new Journal(file);
+		Counters counters = new Counters();
+		for(long key = 1; key <= 3000; key++) {
+			journal.add(key);
+			if(key % 1000 == 0) {
+				counters.incrementProcessedFiles();
+				journal.commit(counters);
+			}
+		}
+		journal.add(3001);
+		LongHashSet keys = new LongHashSet();
+		Journal replayed = new Journal(file);
+		Counters replayedCounters = replayed.replay(keys);
+		assertEquals(3000, keys.size());
+		assertFalse(keys.contains(3001));
+		assertEquals(3, replayedCounters.getProcessedFileCount());
+		assertEquals(3000, replayed.getKeyCount());
+	}
+	
+	@Test
+	public void cutsOffATornTail() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		Journal journal = new Journal(file);
+		journal.add(1);
+		journal.commit(new Counters());
+		long goodLength = file.length();
+		journal.add(2);
+		journal.commit(new Counters());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(file.length() - 5);
+		} finally {
+			raf.close();
+		}
+		Journal replayed = new Journal(file);
+		LongHashSet keys = new LongHashSet();
+		replayed.replay(keys);
+		assertTrue(keys.contains(1));
+		assertTrue(keys.contains(2));
+		// Only the counters record after the second key was torn.
+		assertEquals(goodLength + 9 + 8, file.length());
+		replayed.add(3);
+		replayed.commit(new Counters());
+		keys = new LongHashSet();
+		new Journal(file).replay(keys);
+		assertTrue(keys.contains(1));
+		assertTrue(keys.contains(3));
+	}
+	
+	@Test
+	public void stopsAtACorruptRecord() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		Journal journal = new Journal(file);
+		journal.add(1);
+		journal.commit(new Counters());
+		long goodLength = file.length();
+		journal.add(2);
+		journal.commit(new Counters());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(goodLength + 5);
+			raf.write(raf.read() ^ 0xFF);
+		} finally {
+			raf.close();
+		}
+		LongHashSet keys = new LongHashSet();
+		new Journal(file).replay(keys);
+		assertEquals(1, keys.size());
+		assertEquals(goodLength, file.length());
+	}
+	
+	@Test
+	public void keepsTheKeysOfAFailedCommit() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		Journal journal = new Journal(file);
+		journal.add(1);
+		journal.commit(new Counters());
+		File moved = new File(folder.getRoot(), "journal.moved");
+		assertTrue(file.renameTo(moved));
+		assertTrue(file.mkdir());
+		journal.add(2);
+		try {
+			journal.commit(new Counters());
+			fail("Committing to a directory should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		journal.add(3);
+		assertTrue(file.delete());
+		assertTrue(moved.renameTo(file));
+		journal.commit(new Counters());
+		LongHashSet keys = new LongHashSet();
+		new Journal(file).replay(keys);
+		assertEquals(3, keys.size());
+		assertTrue(keys.contains(2));
+		assertTrue(keys.contains(3));
+	}
+	
+	@Test
+	public void truncatesToEmpty() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		Journal journal = new Journal(file);
+		journal.add(1);
+		journal.commit(new Counters());
+		journal.truncate();
+		assertEquals(0, file.length());
+		assertEquals(0, journal.getKeyCount());
+		LongHashSet keys = new LongHashSet();
+		assertNull(new Journal(file).replay(keys));
+		assertEquals(0, keys.size());
+	}
+	
+	@Test
+	public void replaysRemovedKeys() throws Exception {
+		File file = new File(folder.getRoot(), "journal");
+		Journal journal = new Journal(file);
+		journal.add(1);
+		journal.add(2);
+		journal.commit(new Counters());
+		journal.remove(1);
+		journal.add(3);
+		journal.remove(3);
+		journal.commit(new Counters());
+		journal.add(1);
+		journal.remove(2);
+		journal.commit(new Counters());
+		LongHashSet keys = new LongHashSet();
+		new Journal(file).replay(keys);
+		assertTrue(keys.contains(1));
+		assertFalse(keys.contains(2));
+		assertFalse(keys.contains(3));
+		assertEquals(1, keys.size());
+	}
+}
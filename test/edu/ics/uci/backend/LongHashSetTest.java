@@ -0,0 +1,114 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class LongHashSetTest {
+	
+	@Test
+	public void addsEachKeyOnce() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertTrue(set.contains(42));
+		assertFalse(set.contains(43));
+		assertEquals(1, set.size());
+	}
+	
+	@Test
+	public void holdsZero() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(0));
+		assertEquals(1, set.size());
+	}
+	
+	@Test
+	public void keepsEveryKeyAcrossGrowth() {
+		LongHashSet set = new LongHashSet();
+		for(long key = 1; key <= 100000; key++) {
+			assertTrue(set.add(key));
+		}
+		assertEquals(100000, set.size());
+		for(long key = 1; key <= 100000; key++) {
+			assertTrue(set.contains(key));
+		}
+		assertFalse(set.contains(100001));
+	}
+	
+	@Test
+	public void visitsEveryKey() {
+		LongHashSet set = new LongHashSet();
+		for(long key = 0; key < 1000; key++) {
+			set.add(key * 31);
+		}
+		final long[] sum = new long[1];
+		set.forEach(key -> sum[0] += key);
+		assertEquals(31L * 999 * 1000 / 2, sum[0]);
+	}
+	
+	@Test
+	public void survivesSerialization() throws Exception {
+		LongHashSet set = new LongHashSet();
+		for(long key = 0; key < 5000; key++) {
+			set.add(Parser.mix(key));
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		LongHashSet copy = (LongHashSet) in.readObject();
+		in.close();
+		assertEquals(5000, copy.size());
+		for(long key = 0; key < 5000; key++) {
+			assertTrue(copy.contains(Parser.mix(key)));
+		}
+	}
+	
+	@Test
+	public void removesKeysWithoutLosingTheirNeighbours() {
+		LongHashSet set = new LongHashSet();
+		for(long key = 0; key < 20000; key++) {
+			set.add(key);
+		}
+		for(long key = 0; key < 20000; key += 2) {
+			assertTrue(set.remove(key));
+		}
+		assertFalse(set.remove(0));
+		assertFalse(set.remove(20001));
+		assertEquals(10000, set.size());
+		for(long key = 0; key < 20000; key++) {
+			assertEquals(key % 2 == 1, set.contains(key));
+		}
+		assertTrue(set.add(4));
+		assertTrue(set.contains(4));
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class MappedLongHashSetTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void addsEachKeyOnce() throws Exception {
+		MappedLongHashSet set = new MappedLongHashSet(new File(folder.getRoot(), "seen.map"));
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+		assertTrue(set.add(0));
+		assertFalse(set.add(0));
+		assertTrue(set.contains(42));
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(43));
+		assertEquals(2, set.size());
+	}
+	
+	@Test
+	public void keepsEveryKeyAcrossGrowth() throws Exception {
+		File file = new File(folder.getRoot(), "seen.map");
+		MappedLongHashSet set = new MappedLongHashSet(file);
+		long before = set.getFootprint();
+		for(long key = 1; key <= 200000; key++) {
+			assertTrue(set.add(key));
+		}
+		assertTrue(set.getFootprint() > before);
+		assertEquals(set.getFootprint(), file.length());
+		assertFalse(new File(folder.getRoot(), "seen.map.tmp").exists());
+		for(long key = 1; key <= 200000; key++) {
+			assertTrue(set.contains(key));
+		}
+		assertFalse(set.contains(200001));
+	}
+	
+	@Test
+	public void reopensWithTheSameKeys() throws Exception {
+		File file = new File(folder.getRoot(), "seen.map");
+		MappedLongHashSet set = new MappedLongHashSet(file);
+		for(long key = 0; key < 100000; key++) {
+			set.add(Parser.mix(key));
+		}
+		set.sync();
+		MappedLongHashSet reopened = new MappedLongHashSet(file);
+		assertEquals(100000, reopened.size());
+		for(long key = 0; key < 100000; key++) {
+			assertTrue(reopened.contains(Parser.mix(key)));
+		}
+	}
+	
+	@Test
+	public void ignoresAStaleTemporaryFile() throws Exception {
+		File file = new File(folder.getRoot(), "seen.map");
+		MappedLongHashSet set = new MappedLongHashSet(file);
+		// A leftover the size of the first growth, some of its slots holding a key that was never added.
+		RandomAccessFile stale = new RandomAccessFile(new File(folder.getRoot(), "seen.map.tmp"), "rw");
+		try {
+			byte[] slots = new byte[(int) (file.length() * 2 - 64)];
+			Arrays.fill(slots, 64, 64 + (slots.length - 64) / 4, (byte) 0xFF);
+			stale.write(slots);
+		} finally {
+			stale.close();
+		}
+		long footprint = set.getFootprint();
+		long key = 1;
+		while(set.getFootprint() == footprint) {
+			set.add(key++);
+		}
+		assertEquals(key - 1, set.size());
+		assertFalse(set.contains(-1));
+	}
+	
+	@Test
+	public void removesKeysWithoutLosingTheirNeighbours() throws Exception {
+		File file = new File(folder.getRoot(), "seen.map");
+		MappedLongHashSet set = new MappedLongHashSet(file);
+		for(long key = 0; key < 20000; key++) {
+			set.add(key);
+		}
+		for(long key = 0; key < 20000; key += 2) {
+			assertTrue(set.remove(key));
+		}
+		assertFalse(set.remove(0));
+		assertEquals(10000, set.size());
+		set.sync();
+		MappedLongHashSet reopened = new MappedLongHashSet(file);
+		assertEquals(10000, reopened.size());
+		for(long key = 0; key < 20000; key++) {
+			assertEquals(key % 2 == 1, reopened.contains(key));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.backend;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class XxHash64Test {
+	
+	@Test
+	public void matchesTheReferenceVectors() {
+		assertEquals(0xEF46DB3751D8E999L, hash(""));
+		assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+		assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+		assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+	}
+	
+	@Test
+	public void doesNotDependOnHowTheInputIsSplit() {
+		byte[] input = new byte[1000];
+		for(int i = 0; i < input.length; i++) {
+			input[i] = (byte) (i * 31);
+		}
+		XxHash64 whole = new XxHash64();
+		whole.update(ByteBuffer.wrap(input));
+		for(int chunk = 1; chunk <= 67; chunk += 3) {
+			XxHash64 split = new XxHash64();
+			for(int offset = 0; offset < input.length; offset += chunk) {
+				split.update(ByteBuffer.wrap(input, offset, Math.min(chunk, input.length - offset)));
+			}
+			assertEquals(whole.getValue(), split.getValue());
+		}
+	}
+	
+	private static long hash(String s) {
+		XxHash64 hasher = new XxHash64();
+		hasher.update(ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII)));
+		return hasher.getValue();
+	}
+}
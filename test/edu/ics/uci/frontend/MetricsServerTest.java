@@ -0,0 +1,128 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.ics.uci.frontend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author Paul Tapalla <ptapalla at uci dot edu>
+ */
+public class MetricsServerTest {
+	
+	private static final String TOKEN = "secret";
+	private static final String AUTHORIZATION = "Authorization: Bearer " + TOKEN;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private CrawlController controller;
+	private MetricsServer server;
+	
+	@Before
+	public void startServer() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.newFolder("storage").getPath());
+		config.setPathToDirectory(folder.newFolder("top").getPath());
+		controller = new CrawlController(config);
+		/*
+		 * Port 0 picks any free port.
+		 */
+		server = new MetricsServer(controller, new CrawlMonitor(controller), 0, TOKEN);
+		server.start();
+	}
+	
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+	
+	@Test
+	public void rejectsOtherMethods() throws IOException {
+		assertEquals(405, request("GET", "/pause", AUTHORIZATION));
+		assertFalse(controller.isPaused());
+	}
+	
+	@Test
+	public void rejectsForeignOrigins() throws IOException {
+		assertEquals(403, request("POST", "/pause", AUTHORIZATION, "Origin: http://example.com"));
+		assertFalse(controller.isPaused());
+	}
+	
+	@Test
+	public void rejectsFormContentTypes() throws IOException {
+		assertEquals(415, request("POST", "/pause", AUTHORIZATION, "Content-Type: text/plain; charset=utf-8"));
+		assertEquals(415, request("POST", "/pause", AUTHORIZATION, "Content-Type: application/x-www-form-urlencoded"));
+		assertFalse(controller.isPaused());
+	}
+	
+	@Test
+	public void rejectsMissingOrWrongTokens() throws IOException {
+		assertEquals(401, request("POST", "/pause"));
+		assertEquals(401, request("POST", "/pause", "Authorization: Bearer wrong"));
+		assertEquals(401, request("POST", "/pause", "X-Filecrawler-Request: 1"));
+		assertFalse(controller.isPaused());
+	}
+	
+	@Test
+	public void pausesAndResumesWithTheToken() throws IOException {
+		assertEquals(200, request("POST", "/pause", AUTHORIZATION, "Origin: http://localhost:8080"));
+		assertTrue(controller.isPaused());
+		assertEquals(200, request("POST", "/resume", AUTHORIZATION, "Content-Type: application/json"));
+		assertFalse(controller.isPaused());
+	}
+	
+	/**
+	 * Send a request with an empty body and return the response's status code.
+	 * It's written by hand, since HttpURLConnection drops the Origin header
+	 * and sends bodies as forms.
+	 */
+	private int request(String method, String path, String... headers) throws IOException {
+		Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort());
+		try {
+			StringBuilder request = new StringBuilder();
+			request.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+			request.append("Host: localhost\r\n");
+			request.append("Connection: close\r\n");
+			request.append("Content-Length: 0\r\n");
+			for(String header : headers) {
+				request.append(header).append("\r\n");
+			}
+			request.append("\r\n");
+			OutputStream out = socket.getOutputStream();
+			out.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			String statusLine = in.readLine();
+			return Integer.parseInt(statusLine.split(" ")[1]);
+		} finally {
+			socket.close();
+		}
+	}
+}